@@ -2,6 +2,11 @@ package org.ib.vertx.hatserviceprovider;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.dropwizard.MetricsService;
@@ -9,9 +14,13 @@ import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import org.apache.log4j.Logger;
 import org.ib.vertx.microservicecommonblueprint.RestApiHelperVerticle;
+import org.ib.vertx.microservicecommonblueprint.RpcRequest;
+import org.ib.vertx.microservicecommonblueprint.RpcResponse;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class HatApiVerticle extends AbstractVerticle {
@@ -19,13 +28,27 @@ public class HatApiVerticle extends AbstractVerticle {
     public final static Logger logger = Logger.getLogger(HatProviderApplication.class);
     private RestApiHelperVerticle helperVerticle;
     private MetricsService metricsService;
+    private HatMenu hatMenu;
+    private OrderResponseWriter orderResponseWriter;
+    private CharSequence menuCacheControl;
+    // headers of the order replies sent over the event bus, shared by all of them
+    private MultiMap orderHeaders;
+    private HatCatalog catalog;
+    private int pageSize;
+    private int maxPageSize;
 
     private static final String SERVICE_NAME = "hat-provider";
     private static final String API_NAME = "hat-provider";
 
     private static final String API_PROVIDE_HAT = "/provideHat";
     private static final String API_HAT_MENU = "/hatMenu";
+    private static final String API_HATS = "/hats";
     private static final String API_PROVIDE_METRICS = "/metrics";
+    private static final String API_TRACES = "/traces";
+
+    private static final CharSequence VARY = HttpHeaders.createOptimized("vary");
+    private static final CharSequence APPLICATION_JSON = HttpHeaders.createOptimized("application/json; charset=utf-8");
+    private static final List<Hat> DEFAULT_HATS = Arrays.asList(new Hat("RedHat", "80 Euro"), new Hat("YellowHat", "60 Euro"));
 
     @Override
     public void start(Future<Void> startFuture) throws Exception {
@@ -35,21 +58,49 @@ public class HatApiVerticle extends AbstractVerticle {
         Router router = Router.router(vertx);
 
         // Record endpoints.
+        router.route().handler(this::trace);
         router.get(API_PROVIDE_HAT).handler(this::orderHat);
         router.get(API_HAT_MENU).handler(this::hatMenu);
+        router.get(API_HATS).handler(this::hats);
         router.get(API_PROVIDE_METRICS).handler(this::metrics);
+        router.get(API_TRACES).handler(this::traces);
 
         String serviceName = config().getString("api.name", SERVICE_NAME);
         String apiName = config().getString("service.name", API_NAME);
         String host = config().getString("http.address", "localhost");
         int port = config().getInteger("http.port", 9081);
 
+        // Pre-encode the menu and the constant parts of the order responses
+        hatMenu = HatMenu.getOrCreate(vertx, config().getBoolean("json.pretty", true), DEFAULT_HATS);
+        menuCacheControl = HttpHeaders.createOptimized("max-age=" + config().getInteger("menu.max-age", 5));
+        orderResponseWriter = new OrderResponseWriter(Thread.currentThread().getName(), "RedHat");
+        orderHeaders = MultiMap.caseInsensitiveMultiMap().add(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON);
+
         // Create the Service Discovery endpoint
         helperVerticle = new RestApiHelperVerticle(this);
 
-        // create HTTP server and publish REST HTTP Endpoint
-        helperVerticle.createHttpServer(router, host, port)
+        // Load the hat catalog (from its snapshot if up to date) before serving
+        JsonObject catalogConfig = config().getJsonObject("catalog") != null ?
+            config().getJsonObject("catalog") : new JsonObject();
+        pageSize = catalogConfig.getInteger("page-size", 20);
+        maxPageSize = catalogConfig.getInteger("max-page-size", 100);
+        Future<HatCatalog> catalogLoaded = Future.future();
+        vertx.<HatCatalog>executeBlocking(future -> {
+            try {
+                future.complete(HatCatalog.getOrCreate(vertx, catalogConfig, DEFAULT_HATS));
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, false, catalogLoaded.completer());
+
+        // create HTTP server and publish REST HTTP Endpoint, and the event bus service if enabled
+        catalogLoaded
+            .compose(loaded -> {
+                catalog = loaded;
+                return helperVerticle.createHttpServer(router, host, port);
+            })
             .compose(serverCreated -> helperVerticle.publishHttpEndpoint(serviceName, host, port, apiName))
+            .compose(published -> helperVerticle.publishEventBusService(serviceName, apiName, this::rpc))
             .setHandler(startFuture.completer());
 
         // Create the metrics service which returns a snapshot of measured objects
@@ -65,19 +116,109 @@ public class HatApiVerticle extends AbstractVerticle {
     }
 
     private void hatMenu(RoutingContext routingContext) {
+        // serve the pre-compressed menu, if accepted by the client
+        String encoding = helperVerticle.getCompression().negotiate(routingContext.request(),
+            hatMenu.getBody().length());
+        String etag = hatMenu.getEtag(encoding);
+        if (encoding != null) {
+            routingContext.response()
+                .putHeader(HttpHeaders.CONTENT_ENCODING, encoding)
+                .putHeader(VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (etag.equals(routingContext.request().getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            routingContext.response()
+                .setStatusCode(304)
+                .putHeader(HttpHeaders.ETAG, etag)
+                .putHeader(HttpHeaders.CACHE_CONTROL, menuCacheControl)
+                .end();
+            return;
+        }
         routingContext.response()
-            .putHeader("content-type", "application/json; charset=utf-8")
-            .end(Json.encodePrettily(Arrays.asList(new Hat("RedHat", "80 Euro"), new Hat("YellowHat", "60 Euro"))));
+            .putHeader(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON)
+            .putHeader(HttpHeaders.ETAG, etag)
+            .putHeader(HttpHeaders.CACHE_CONTROL, menuCacheControl)
+            .end(hatMenu.getBody(encoding));
+    }
+
+    /**
+     * Pages through the catalog, optionally filtered by name prefix (<i>q</i>) and price range in Euro
+     * (<i>minPrice</i>, <i>maxPrice</i>).
+     */
+    private void hats(RoutingContext routingContext) {
+        HttpServerRequest request = routingContext.request();
+        HatCatalog.Page page;
+        try {
+            int minPrice = request.getParam("minPrice") == null ? 0 : HatCatalog.parsePrice(request.getParam("minPrice"));
+            int maxPrice = request.getParam("maxPrice") == null ? Integer.MAX_VALUE :
+                HatCatalog.parsePrice(request.getParam("maxPrice"));
+            int pageNumber = request.getParam("page") == null ? 1 : Integer.parseInt(request.getParam("page"));
+            int size = request.getParam("size") == null ? pageSize : Integer.parseInt(request.getParam("size"));
+            if (pageNumber < 1 || size < 1) {
+                throw new IllegalArgumentException("page and size must be positive");
+            }
+            page = catalog.query(request.getParam("q"), minPrice, maxPrice, pageNumber, Math.min(size, maxPageSize));
+        } catch (IllegalArgumentException e) {
+            routingContext.response()
+                .setStatusCode(400)
+                .putHeader(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON)
+                .end(new JsonObject().put("message", "bad_request").put("reason", e.getMessage()).toBuffer());
+            return;
+        }
+        routingContext.response()
+            .putHeader(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON)
+            .end(page.toJson().toBuffer());
     }
 
     private void orderHat(RoutingContext routingContext) {
         routingContext.response()
-            .putHeader("content-type", "application/json; charset=utf-8")
-                .end(String.format("[HatProvider-%s][ResponseId-%d]-%s", Thread.currentThread().getName(), ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE), "RedHat"));
+            .putHeader(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON)
+            .end(orderResponseWriter.write(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE)));
+    }
+
+    /**
+     * Serves the api over the event bus, with the same responses as over HTTP.
+     */
+    private void rpc(Message<RpcRequest> message) {
+        RpcRequest request = message.body();
+        switch (request.getPath()) {
+            case API_PROVIDE_HAT:
+                message.reply(new RpcResponse(200, orderHeaders,
+                    orderResponseWriter.write(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE))));
+                break;
+            case API_HAT_MENU:
+                String encoding = helperVerticle.getCompression().negotiate(request.getHeaders(),
+                    hatMenu.getBody().length());
+                String etag = hatMenu.getEtag(encoding);
+                MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+                    .add(HttpHeaders.ETAG, etag)
+                    .add(HttpHeaders.CACHE_CONTROL, menuCacheControl);
+                if (encoding != null) {
+                    headers.add(HttpHeaders.CONTENT_ENCODING, encoding).add(VARY, HttpHeaders.ACCEPT_ENCODING);
+                }
+                if (etag.equals(request.getHeaders().get(HttpHeaders.IF_NONE_MATCH))) {
+                    message.reply(new RpcResponse(304, headers, Buffer.buffer()));
+                    return;
+                }
+                message.reply(new RpcResponse(200, headers.add(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON),
+                    hatMenu.getBody(encoding)));
+                break;
+            default:
+                message.reply(new RpcResponse(404, orderHeaders,
+                    new JsonObject().put("message", "not_found").toBuffer()));
+        }
+    }
+
+    private void trace(RoutingContext routingContext) {
+        helperVerticle.traceRequest(routingContext);
+    }
+
+    private void traces(RoutingContext routingContext) {
+        helperVerticle.traces(routingContext);
     }
 
     private void metrics(RoutingContext routingContext) {
         JsonObject metrics = metricsService.getMetricsSnapshot(vertx);
+        metrics.put("upstreams", helperVerticle.getUpstreamMetrics());
         routingContext.response()
             .putHeader("content-type", "application/json; charset=utf-8")
             .end(Json.encodePrettily(metrics));
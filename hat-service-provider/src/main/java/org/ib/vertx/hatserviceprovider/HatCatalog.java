@@ -0,0 +1,484 @@
+package org.ib.vertx.hatserviceprovider;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Read-only, in-memory catalog of hats, stored column-wise in primitive arrays: prices in integer cents and the
+ * UTF-8 names concatenated in a single byte array. The sku of a hat is its position in the arrays. Two secondary
+ * indexes, the skus sorted by (ASCII case-insensitive) name and by price, turn a name prefix or a price range into
+ * a contiguous range found by binary search; a query walks the narrower of the two ranges and checks the other
+ * criterion in constant time.
+ * <p>
+ * The catalog is read from the <i>file</i> of the <i>catalog</i> block (a JSON array of hats), or generated with
+ * <i>generate</i> synthetic hats, or else made of the default hats. The arrays and indexes are saved in the
+ * <i>snapshot</i> file, if configured, which is memory-mapped and bulk-copied at the next start as long as the
+ * source has not changed, instead of parsing and sorting again. One catalog is shared by all the verticle instances
+ * of a JVM.
+ */
+public class HatCatalog implements Shareable {
+
+    private final static Logger logger = Logger.getLogger(HatCatalog.class);
+    private static final int MAGIC = 0x48415431; // HAT1
+    private static final int VERSION = 1;
+    // magic, version, source stamp, size, names length
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+    private static final String[] COLORS = {"Red", "Yellow", "Blue", "Green", "Black", "White", "Grey", "Brown"};
+    private static final String[] STYLES = {"Hat", "Fedora", "Beanie", "Cap", "Beret", "Panama", "Trilby", "Bowler"};
+
+    private final int size;
+    private final int[] prices;
+    // name of sku i: names[nameOffsets[i], nameOffsets[i + 1])
+    private final int[] nameOffsets;
+    private final byte[] names;
+    // skus sorted by name and by price, and the position of every sku in the name order
+    private final int[] nameOrder;
+    private final int[] priceOrder;
+    private final int[] nameRanks;
+
+    private HatCatalog(int[] prices, int[] nameOffsets, byte[] names, int[] nameOrder, int[] priceOrder) {
+        this.size = prices.length;
+        this.prices = prices;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+        this.nameOrder = nameOrder;
+        this.priceOrder = priceOrder;
+        this.nameRanks = new int[size];
+        for (int rank = 0; rank < size; rank++) {
+            nameRanks[nameOrder[rank]] = rank;
+        }
+    }
+
+    /**
+     * Loads the catalog of this JVM, the first caller reads it (blocking) from the snapshot or from its source.
+     */
+    public static synchronized HatCatalog getOrCreate(Vertx vertx, JsonObject options, List<Hat> defaults)
+        throws IOException {
+        LocalMap<String, HatCatalog> catalogs = vertx.sharedData().getLocalMap(HatCatalog.class.getName());
+        HatCatalog catalog = catalogs.get("catalog");
+        if (catalog != null) {
+            return catalog;
+        }
+        long start = System.nanoTime();
+        Path source = Paths.get(options.getString("file", "hats.json"));
+        int generate = options.getInteger("generate", 0);
+        long stamp = Files.isRegularFile(source) ?
+            Files.getLastModifiedTime(source).toMillis() * 31 + Files.size(source) :
+            generate > 0 ? -generate : defaults.toString().hashCode();
+        Path snapshot = options.getString("snapshot") == null ? null : Paths.get(options.getString("snapshot"));
+        catalog = snapshot == null ? null : load(snapshot, stamp);
+        if (catalog != null) {
+            logger.info("Hat catalog of " + catalog.size + " hats loaded from snapshot [" + snapshot + "] in " +
+                (System.nanoTime() - start) / 1000000 + " ms");
+        } else {
+            catalog = Files.isRegularFile(source) ? read(source) : generate > 0 ? generate(generate) : build(defaults);
+            logger.info("Hat catalog of " + catalog.size + " hats built in " + (System.nanoTime() - start) / 1000000 +
+                " ms");
+            if (snapshot != null) {
+                try {
+                    catalog.save(snapshot, stamp);
+                } catch (IOException e) {
+                    logger.warn("Unable to save the hat catalog snapshot [" + snapshot + "]: " + e.getMessage());
+                }
+            }
+        }
+        catalogs.put("catalog", catalog);
+        return catalog;
+    }
+
+    public static HatCatalog build(List<Hat> hats) {
+        List<String> hatNames = new ArrayList<>(hats.size());
+        int[] hatPrices = new int[hats.size()];
+        for (int i = 0; i < hats.size(); i++) {
+            hatNames.add(hats.get(i).getName());
+            hatPrices[i] = parsePrice(hats.get(i).getPrice());
+        }
+        return build(hatNames, hatPrices);
+    }
+
+    private static HatCatalog build(List<String> hatNames, int[] hatPrices) {
+        int size = hatPrices.length;
+        int[] nameOffsets = new int[size + 1];
+        byte[][] encoded = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            encoded[i] = hatNames.get(i).getBytes(StandardCharsets.UTF_8);
+            nameOffsets[i + 1] = nameOffsets[i] + encoded[i].length;
+        }
+        byte[] names = new byte[nameOffsets[size]];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(encoded[i], 0, names, nameOffsets[i], encoded[i].length);
+        }
+        // the name order is sorted once, when building; the price order is sorted as (price, sku) pairs
+        Integer[] byName = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            byName[i] = i;
+        }
+        Arrays.sort(byName, (a, b) -> {
+            int c = compare(names, nameOffsets[a], nameOffsets[a + 1], names, nameOffsets[b], nameOffsets[b + 1]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        int[] nameOrder = new int[size];
+        long[] byPrice = new long[size];
+        for (int i = 0; i < size; i++) {
+            nameOrder[i] = byName[i];
+            byPrice[i] = (long) hatPrices[i] << 32 | i;
+        }
+        Arrays.sort(byPrice);
+        int[] priceOrder = new int[size];
+        for (int i = 0; i < size; i++) {
+            priceOrder[i] = (int) byPrice[i];
+        }
+        return new HatCatalog(hatPrices, nameOffsets, names, nameOrder, priceOrder);
+    }
+
+    private static HatCatalog read(Path source) throws IOException {
+        JsonArray hats = new JsonArray(new String(Files.readAllBytes(source), StandardCharsets.UTF_8));
+        List<String> hatNames = new ArrayList<>(hats.size());
+        int[] hatPrices = new int[hats.size()];
+        for (int i = 0; i < hats.size(); i++) {
+            JsonObject hat = hats.getJsonObject(i);
+            hatNames.add(hat.getString("name"));
+            Object price = hat.getValue("price");
+            hatPrices[i] = price instanceof Number ? (int) Math.round(((Number) price).doubleValue() * 100) :
+                parsePrice(String.valueOf(price));
+        }
+        return build(hatNames, hatPrices);
+    }
+
+    /**
+     * @return a catalog of synthetic hats, always the same for a given count
+     */
+    private static HatCatalog generate(int count) {
+        Random random = new Random(count);
+        List<String> hatNames = new ArrayList<>(count);
+        int[] hatPrices = new int[count];
+        for (int i = 0; i < count; i++) {
+            hatNames.add(COLORS[random.nextInt(COLORS.length)] + STYLES[random.nextInt(STYLES.length)] + " " + i);
+            hatPrices[i] = 500 + random.nextInt(491) * 50;
+        }
+        return build(hatNames, hatPrices);
+    }
+
+    /**
+     * @return the catalog of the snapshot, null if there is none or if it does not match the source stamp
+     */
+    static HatCatalog load(Path snapshot, long stamp) {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != stamp) {
+                logger.info("Hat catalog snapshot [" + snapshot + "] is outdated, rebuilding it");
+                return null;
+            }
+            int size = buffer.getInt();
+            int namesLength = buffer.getInt();
+            if (channel.size() != HEADER_BYTES + 4L * (4 * size + 1) + namesLength) {
+                logger.warn("Hat catalog snapshot [" + snapshot + "] is truncated, rebuilding it");
+                return null;
+            }
+            int[] prices = new int[size];
+            int[] nameOffsets = new int[size + 1];
+            int[] nameOrder = new int[size];
+            int[] priceOrder = new int[size];
+            byte[] names = new byte[namesLength];
+            IntBuffer ints = buffer.asIntBuffer();
+            ints.get(prices).get(nameOffsets).get(nameOrder).get(priceOrder);
+            buffer.position(buffer.position() + 4 * ints.position());
+            buffer.get(names);
+            return new HatCatalog(prices, nameOffsets, names, nameOrder, priceOrder);
+        } catch (IOException e) {
+            logger.warn("Unable to load the hat catalog snapshot [" + snapshot + "]: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot through a memory-mapped temporary file, then moves it in place.
+     */
+    void save(Path snapshot, long stamp) throws IOException {
+        if (snapshot.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(snapshot.toAbsolutePath().getParent());
+        }
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_BYTES + 4L * (4 * size + 1) + names.length);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(stamp).putInt(size).putInt(names.length);
+            IntBuffer ints = buffer.asIntBuffer();
+            ints.put(prices).put(nameOffsets).put(nameOrder).put(priceOrder);
+            buffer.position(buffer.position() + 4 * ints.position());
+            buffer.put(names);
+            buffer.force();
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Finds the hats whose name starts with the prefix (if any) and whose price is within the range, ordered by
+     * name if a prefix is given, by price otherwise.
+     *
+     * @param page 1 for the first page
+     */
+    public Page query(String prefix, int minPrice, int maxPrice, int page, int pageSize) {
+        int priceFrom = lowerPriceBound(minPrice);
+        // an empty range when minPrice > maxPrice
+        int priceTo = Math.max(priceFrom, upperPriceBound(maxPrice));
+        long offset = (long) (page - 1) * pageSize;
+        if (prefix == null || prefix.isEmpty()) {
+            return slice(priceOrder, priceFrom, priceTo, offset, page, pageSize);
+        }
+        byte[] key = lowerCase(prefix.getBytes(StandardCharsets.UTF_8));
+        int nameFrom = lowerNameBound(key);
+        int nameTo = upperNameBound(key);
+        if (priceFrom == 0 && priceTo == size) {
+            return slice(nameOrder, nameFrom, nameTo, offset, page, pageSize);
+        }
+        if (nameTo - nameFrom <= priceTo - priceFrom) {
+            // walk the name range in order, skipping the hats out of the price range
+            int[] skus = new int[pageSize];
+            int count = 0;
+            int total = 0;
+            for (int rank = nameFrom; rank < nameTo; rank++) {
+                int price = prices[nameOrder[rank]];
+                if (price >= minPrice && price <= maxPrice) {
+                    if (total >= offset && count < pageSize) {
+                        skus[count++] = nameOrder[rank];
+                    }
+                    total++;
+                }
+            }
+            return new Page(this, total, page, pageSize, Arrays.copyOf(skus, count));
+        }
+        // walk the (narrower) price range, keeping the names in the prefix range, then sort them by name
+        int[] ranks = new int[Math.min(priceTo - priceFrom, nameTo - nameFrom)];
+        int total = 0;
+        for (int i = priceFrom; i < priceTo; i++) {
+            int rank = nameRanks[priceOrder[i]];
+            if (rank >= nameFrom && rank < nameTo) {
+                ranks[total++] = rank;
+            }
+        }
+        Arrays.sort(ranks, 0, total);
+        int count = (int) Math.max(0, Math.min(pageSize, total - offset));
+        int[] skus = new int[count];
+        for (int i = 0; i < count; i++) {
+            skus[i] = nameOrder[ranks[(int) offset + i]];
+        }
+        return new Page(this, total, page, pageSize, skus);
+    }
+
+    private Page slice(int[] order, int from, int to, long offset, int page, int pageSize) {
+        int start = (int) Math.min(to, from + offset);
+        return new Page(this, to - from, page, pageSize, Arrays.copyOfRange(order, start, Math.min(to, start + pageSize)));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getName(int sku) {
+        return new String(names, nameOffsets[sku], nameOffsets[sku + 1] - nameOffsets[sku], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the price in cents
+     */
+    public int getPrice(int sku) {
+        return prices[sku];
+    }
+
+    /**
+     * @return the first position of the price order whose price is at least <i>minPrice</i>
+     */
+    private int lowerPriceBound(int minPrice) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (prices[priceOrder[middle]] < minPrice) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first position of the price order whose price is above <i>maxPrice</i>
+     */
+    private int upperPriceBound(int maxPrice) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (prices[priceOrder[middle]] <= maxPrice) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first position of the name order whose name is not before the prefix
+     */
+    private int lowerNameBound(byte[] key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(nameOrder[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first position of the name order whose name is after the names starting with the prefix
+     */
+    private int upperNameBound(byte[] key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(nameOrder[middle], key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the name of the sku, truncated to the length of the key, with the (lower-case) key.
+     */
+    private int comparePrefix(int sku, byte[] key) {
+        int start = nameOffsets[sku];
+        int end = Math.min(nameOffsets[sku + 1], start + key.length);
+        return compare(names, start, end, key, 0, key.length);
+    }
+
+    /**
+     * Compares two UTF-8 strings byte by byte, ignoring the case of the ASCII letters.
+     */
+    private static int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+        int length = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < length; i++) {
+            int c = (lowerCase(a[aFrom + i]) & 0xff) - (lowerCase(b[bFrom + i]) & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+
+    private static byte lowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte[] lowerCase(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = lowerCase(bytes[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * @param price an amount with at most two decimals, optionally followed by the currency, e.g. "80 Euro"
+     * @return the price in cents
+     */
+    public static int parsePrice(String price) {
+        String amount = price.trim();
+        int separator = amount.indexOf(' ');
+        try {
+            return new BigDecimal(separator == -1 ? amount : amount.substring(0, separator))
+                .movePointRight(2).intValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid price [" + price + "]");
+        }
+    }
+
+    /**
+     * @return the price in the format of the hat menu, e.g. "80 Euro" or "59.90 Euro"
+     */
+    public static String formatPrice(int cents) {
+        return (cents % 100 == 0 ? String.valueOf(cents / 100) :
+            BigDecimal.valueOf(cents).movePointLeft(2).toPlainString()) + " Euro";
+    }
+
+    /**
+     * A page of the result of a query.
+     */
+    public static class Page {
+        private final HatCatalog catalog;
+        private final int total;
+        private final int page;
+        private final int pageSize;
+        private final int[] skus;
+
+        Page(HatCatalog catalog, int total, int page, int pageSize, int[] skus) {
+            this.catalog = catalog;
+            this.total = total;
+            this.page = page;
+            this.pageSize = pageSize;
+            this.skus = skus;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int[] getSkus() {
+            return skus;
+        }
+
+        public JsonObject toJson() {
+            JsonArray hats = new JsonArray();
+            for (int sku : skus) {
+                hats.add(new JsonObject()
+                    .put("sku", sku)
+                    .put("name", catalog.getName(sku))
+                    .put("price", formatPrice(catalog.getPrice(sku)))
+                    .put("price-cents", catalog.getPrice(sku)));
+            }
+            return new JsonObject()
+                .put("total", total)
+                .put("page", page)
+                .put("page-size", pageSize)
+                .put("pages", (total + pageSize - 1) / pageSize)
+                .put("hats", hats);
+        }
+    }
+}
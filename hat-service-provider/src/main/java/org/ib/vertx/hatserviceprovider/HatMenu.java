@@ -0,0 +1,86 @@
+package org.ib.vertx.hatserviceprovider;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import org.ib.vertx.microservicecommonblueprint.ResponseCompression;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The hat menu, pre-encoded once into a buffer shared by all the verticle instances of the JVM and re-encoded
+ * only when the menu changes. Vert.x buffers can be written any number of times, from any event loop.
+ * Its gzip and deflate forms are compressed along, so the menu is never compressed per request.
+ */
+public class HatMenu implements Shareable {
+
+    private final boolean pretty;
+    private volatile Encoded encoded;
+
+    private HatMenu(boolean pretty, List<Hat> hats) {
+        this.pretty = pretty;
+        update(hats);
+    }
+
+    public static HatMenu getOrCreate(Vertx vertx, boolean pretty, List<Hat> hats) {
+        LocalMap<String, HatMenu> menus = vertx.sharedData().getLocalMap(HatMenu.class.getName());
+        HatMenu candidate = new HatMenu(pretty, hats);
+        HatMenu existing = menus.putIfAbsent("menu", candidate);
+        return existing == null ? candidate : existing;
+    }
+
+    public void update(List<Hat> hats) {
+        String json = pretty ? Json.encodePrettily(hats) : Json.encode(hats);
+        Buffer body = Buffer.buffer(json);
+        encoded = new Encoded(Collections.unmodifiableList(hats), body, Integer.toHexString(json.hashCode()),
+            ResponseCompression.compress(body, ResponseCompression.GZIP),
+            ResponseCompression.compress(body, ResponseCompression.DEFLATE));
+    }
+
+    public List<Hat> getHats() {
+        return encoded.hats;
+    }
+
+    public Buffer getBody() {
+        return encoded.body;
+    }
+
+    /**
+     * @param encoding gzip, deflate or null for the identity
+     */
+    public Buffer getBody(String encoding) {
+        Encoded current = encoded;
+        return encoding == null ? current.body :
+            ResponseCompression.GZIP.equals(encoding) ? current.gzipBody : current.deflateBody;
+    }
+
+    public String getEtag() {
+        return getEtag(null);
+    }
+
+    /**
+     * @return the (strong) etag of the representation in the given encoding
+     */
+    public String getEtag(String encoding) {
+        return "\"" + encoded.etag + (encoding == null ? "" : "-" + encoding) + "\"";
+    }
+
+    private static class Encoded {
+        private final List<Hat> hats;
+        private final Buffer body;
+        private final String etag;
+        private final Buffer gzipBody;
+        private final Buffer deflateBody;
+
+        Encoded(List<Hat> hats, Buffer body, String etag, Buffer gzipBody, Buffer deflateBody) {
+            this.hats = hats;
+            this.body = body;
+            this.etag = etag;
+            this.gzipBody = gzipBody;
+            this.deflateBody = deflateBody;
+        }
+    }
+}
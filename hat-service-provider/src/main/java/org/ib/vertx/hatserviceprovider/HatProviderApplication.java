@@ -1,14 +1,16 @@
 package org.ib.vertx.hatserviceprovider;
 
-import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
-import io.vertx.core.VertxOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.dropwizard.DropwizardMetricsOptions;
 import org.apache.log4j.Logger;
 import rx.functions.Action1;
 
 import static org.ib.vertx.microservicecommonblueprint.ConfigRetrieverHelper.CONFIG_RETRIEVER_HELPER;
+import static org.ib.vertx.microservicecommonblueprint.DeploymentHelper.createDeploymentOptions;
+import static org.ib.vertx.microservicecommonblueprint.DeploymentHelper.createVertx;
+import static org.ib.vertx.microservicecommonblueprint.DeploymentHelper.getConfigScanPeriod;
+import static org.ib.vertx.microservicecommonblueprint.DeploymentHelper.createVertxOptions;
 
 public class HatProviderApplication {
 
@@ -19,20 +21,23 @@ public class HatProviderApplication {
 
         logger.info("Java Version [" + System.getProperty("java.version") + "]");
 
-        vertx = Vertx.vertx(new VertxOptions().setMetricsOptions(
+        createVertx(createVertxOptions("application.json").setMetricsOptions(
             new DropwizardMetricsOptions()
                 .setEnabled(true)
-                .setJmxEnabled(true))
-        );
-
-        CONFIG_RETRIEVER_HELPER
-            .fromFileStore("application.json")
-            .fromSystem()
-            .createConfig(vertx)
-            .subscribe(configReady);
+                .setJmxEnabled(true)), created -> {
+            vertx = created;
+            logger.info("Native transport enabled [" + vertx.isNativeTransportEnabled() + "]");
+
+            CONFIG_RETRIEVER_HELPER
+                .fromFileStore("application.json")
+                .fromSystem()
+                .withScanPeriod(getConfigScanPeriod("application.json"))
+                .createConfig(vertx)
+                .subscribe(configReady);
+        });
     }
 
     public static Action1<JsonObject> configReady = config -> {
-        vertx.deployVerticle(new HatApiVerticle(), new DeploymentOptions().setConfig(config));
+        vertx.deployVerticle(HatApiVerticle::new, createDeploymentOptions(config));
     };
 }
\ No newline at end of file
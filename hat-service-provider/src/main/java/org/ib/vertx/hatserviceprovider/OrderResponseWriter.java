@@ -0,0 +1,37 @@
+package org.ib.vertx.hatserviceprovider;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Builds the <i>[HatProvider-thread][ResponseId-id]-hat</i> order responses from pre-encoded parts, without
+ * String.format or intermediate strings. The thread name is fixed, an instance belongs to one event loop.
+ */
+public class OrderResponseWriter {
+
+    private static final int MAX_INT_DIGITS = 10;
+
+    private final Buffer prefix;
+    private final Buffer suffix;
+    private final byte[] digits = new byte[MAX_INT_DIGITS];
+
+    public OrderResponseWriter(String threadName, String hatName) {
+        this.prefix = Buffer.buffer("[HatProvider-" + threadName + "][ResponseId-");
+        this.suffix = Buffer.buffer("]-" + hatName);
+    }
+
+    /**
+     * @param responseId a non negative id
+     */
+    public Buffer write(int responseId) {
+        int position = MAX_INT_DIGITS;
+        int value = responseId;
+        do {
+            digits[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        return Buffer.buffer(prefix.length() + MAX_INT_DIGITS + suffix.length())
+            .appendBuffer(prefix)
+            .appendBytes(digits, position, MAX_INT_DIGITS - position)
+            .appendBuffer(suffix);
+    }
+}
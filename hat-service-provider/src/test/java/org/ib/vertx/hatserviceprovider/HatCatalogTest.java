@@ -0,0 +1,139 @@
+package org.ib.vertx.hatserviceprovider;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Queries of the hat catalog by name prefix, price range and page.
+ */
+public class HatCatalogTest {
+
+    private static final List<Hat> HATS = Arrays.asList(
+        new Hat("RedHat", "80 Euro"),
+        new Hat("YellowHat", "60 Euro"),
+        new Hat("redCap", "15.50 Euro"),
+        new Hat("RedFedora", "120 Euro"),
+        new Hat("BlueBeret", "30 Euro"),
+        new Hat("RedBeanie", "10 Euro"),
+        new Hat("Reed Panama", "45 Euro"));
+
+    private final HatCatalog catalog = HatCatalog.build(HATS);
+
+    @Test
+    public void ordersByPriceWithoutPrefix() {
+        HatCatalog.Page page = catalog.query(null, 0, Integer.MAX_VALUE, 1, 10);
+        assertEquals(7, page.getTotal());
+        assertArrayEquals(new int[]{5, 2, 4, 6, 1, 0, 3}, page.getSkus());
+    }
+
+    @Test
+    public void filtersByPriceRange() {
+        HatCatalog.Page page = catalog.query(null, 1550, 6000, 1, 10);
+        assertEquals(4, page.getTotal());
+        assertArrayEquals(new int[]{2, 4, 6, 1}, page.getSkus());
+    }
+
+    @Test
+    public void ordersByNameWithPrefixIgnoringCase() {
+        HatCatalog.Page page = catalog.query("RED", 0, Integer.MAX_VALUE, 1, 10);
+        assertEquals(4, page.getTotal());
+        // RedBeanie, redCap, RedFedora, RedHat
+        assertArrayEquals(new int[]{5, 2, 3, 0}, page.getSkus());
+        page = catalog.query("re", 0, Integer.MAX_VALUE, 1, 10);
+        assertEquals(5, page.getTotal());
+        assertArrayEquals(new int[]{5, 2, 3, 0, 6}, page.getSkus());
+    }
+
+    @Test
+    public void filtersByPrefixAndPriceRange() {
+        HatCatalog.Page page = catalog.query("re", 1000, 8000, 1, 10);
+        assertEquals(4, page.getTotal());
+        assertArrayEquals(new int[]{5, 2, 0, 6}, page.getSkus());
+        page = catalog.query("redh", 1000, 8000, 1, 10);
+        assertEquals(1, page.getTotal());
+        assertArrayEquals(new int[]{0}, page.getSkus());
+    }
+
+    @Test
+    public void returnsNothingWhenMinPriceIsAboveMaxPrice() {
+        HatCatalog.Page page = catalog.query(null, 5000, 1000, 1, 10);
+        assertEquals(0, page.getTotal());
+        assertArrayEquals(new int[0], page.getSkus());
+        page = catalog.query("red", 5000, 1000, 1, 10);
+        assertEquals(0, page.getTotal());
+        assertArrayEquals(new int[0], page.getSkus());
+    }
+
+    @Test
+    public void returnsNothingForUnknownPrefix() {
+        HatCatalog.Page page = catalog.query("green", 0, Integer.MAX_VALUE, 1, 10);
+        assertEquals(0, page.getTotal());
+        assertArrayEquals(new int[0], page.getSkus());
+    }
+
+    @Test
+    public void pagesThroughTheResult() {
+        assertArrayEquals(new int[]{5, 2, 4}, catalog.query(null, 0, Integer.MAX_VALUE, 1, 3).getSkus());
+        assertArrayEquals(new int[]{6, 1, 0}, catalog.query(null, 0, Integer.MAX_VALUE, 2, 3).getSkus());
+        assertArrayEquals(new int[]{3}, catalog.query(null, 0, Integer.MAX_VALUE, 3, 3).getSkus());
+        HatCatalog.Page beyond = catalog.query(null, 0, Integer.MAX_VALUE, 4, 3);
+        assertEquals(7, beyond.getTotal());
+        assertArrayEquals(new int[0], beyond.getSkus());
+        assertArrayEquals(new int[]{0, 6}, catalog.query("re", 0, Integer.MAX_VALUE, 2, 3).getSkus());
+        assertArrayEquals(new int[0], catalog.query("red", 1000, 8000, 3, 2).getSkus());
+    }
+
+    /**
+     * Both walks (by name range and by price range) against a linear scan of a larger catalog.
+     */
+    @Test
+    public void matchesALinearScan() {
+        Random random = new Random(42);
+        String[] colors = {"Red", "red", "Reed", "Blue", "Black", "Brown"};
+        String[] styles = {"Hat", "Fedora", "Cap", "Beret"};
+        List<Hat> hats = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            hats.add(new Hat(colors[random.nextInt(colors.length)] + styles[random.nextInt(styles.length)] + " " + i,
+                HatCatalog.formatPrice(500 + random.nextInt(200) * 50)));
+        }
+        HatCatalog large = HatCatalog.build(hats);
+        String[] prefixes = {null, "r", "red", "REDH", "b", "bl", "brownc", "x"};
+        for (int i = 0; i < 500; i++) {
+            String prefix = prefixes[random.nextInt(prefixes.length)];
+            int minPrice = random.nextInt(11000);
+            int maxPrice = random.nextInt(4) == 0 ? Integer.MAX_VALUE : random.nextInt(11000);
+            int pageSize = 1 + random.nextInt(20);
+            int page = 1 + random.nextInt(5);
+            int[] expected = scan(hats, prefix, minPrice, maxPrice);
+            HatCatalog.Page result = large.query(prefix, minPrice, maxPrice, page, pageSize);
+            String query = prefix + " " + minPrice + "-" + maxPrice + " page " + page + " of " + pageSize;
+            assertEquals(query, expected.length, result.getTotal());
+            int from = Math.min(expected.length, (page - 1) * pageSize);
+            assertArrayEquals(query, Arrays.copyOfRange(expected, from, Math.min(expected.length, from + pageSize)),
+                result.getSkus());
+        }
+    }
+
+    private static int[] scan(List<Hat> hats, String prefix, int minPrice, int maxPrice) {
+        List<Integer> skus = new ArrayList<>();
+        for (int sku = 0; sku < hats.size(); sku++) {
+            int price = HatCatalog.parsePrice(hats.get(sku).getPrice());
+            String name = hats.get(sku).getName().toLowerCase();
+            if (price >= minPrice && price <= maxPrice && (prefix == null || name.startsWith(prefix.toLowerCase()))) {
+                skus.add(sku);
+            }
+        }
+        Comparator<Integer> byPrice = Comparator.comparingInt(sku -> HatCatalog.parsePrice(hats.get(sku).getPrice()));
+        Comparator<Integer> byName = Comparator.comparing(sku -> hats.get(sku).getName().toLowerCase());
+        skus.sort((prefix == null ? byPrice : byName).thenComparing(Comparator.naturalOrder()));
+        return skus.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
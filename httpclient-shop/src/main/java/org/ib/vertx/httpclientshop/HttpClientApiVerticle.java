@@ -2,11 +2,14 @@ package org.ib.vertx.httpclientshop;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.dropwizard.MetricsService;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
 import org.apache.log4j.Logger;
 import org.ib.vertx.microservicecommonblueprint.RestApiHelperVerticle;
 
@@ -26,7 +29,10 @@ public class HttpClientApiVerticle extends AbstractVerticle {
     private static final String API_ROOT = "/";
     private static final String API_ORDER_HAT = "/orderHat";
     private static final String API_ORDER_SHOE = "/orderShoe";
+    private static final String API_ORDERS = "/orders";
     private static final String API_PROVIDE_METRICS = "/metrics";
+    private static final String API_TRACES = "/traces";
+    private static final String API_PROVIDE_PROMETHEUS_METRICS = "/metrics/prometheus";
 
     @Override
     public void start(Future<Void> startFuture) {
@@ -34,10 +40,16 @@ public class HttpClientApiVerticle extends AbstractVerticle {
         Router router = Router.router(vertx);
 
         // Record endpoints.
+        router.route().handler(this::trace);
         router.get(API_ROOT).handler(this::home);
         router.get(API_ORDER_HAT).handler(this::orderHat);
         router.get(API_ORDER_SHOE).handler(this::orderShoe);
+        router.post(API_ORDERS).handler(BodyHandler.create()
+            .setBodyLimit(config().getJsonObject("orders", new JsonObject()).getLong("max-body-size", 1048576L)));
+        router.post(API_ORDERS).handler(this::orders);
         router.get(API_PROVIDE_METRICS).handler(this::metrics);
+        router.get(API_TRACES).handler(this::traces);
+        router.get(API_PROVIDE_PROMETHEUS_METRICS).handler(this::prometheusMetrics);
 
         String serviceName = config().getString("api.name", SERVICE_NAME);
         String apiName = config().getString("service.name", API_NAME);
@@ -78,8 +90,46 @@ public class HttpClientApiVerticle extends AbstractVerticle {
         helperVerticle.dispatchRequests(routingContext, "/hat-provider/provideHat");
     }
 
+    private void orders(RoutingContext routingContext) {
+        JsonObject options = config().getJsonObject("orders", new JsonObject());
+        JsonArray items;
+        try {
+            JsonObject order = routingContext.getBodyAsJson();
+            items = order == null ? null : order.getJsonArray("items");
+        } catch (DecodeException | ClassCastException e) {
+            items = null;
+        }
+        if (items == null || items.isEmpty() || items.size() > options.getInteger("max-items", 1000)) {
+            routingContext.response().setStatusCode(400)
+                .putHeader("content-type", "application/json; charset=utf-8")
+                .end(new JsonObject().put("error", "invalid_order")
+                    .put("message", "expecting 1 to " + options.getInteger("max-items", 1000) + " items")
+                    .encodePrettily());
+            return;
+        }
+        new OrderBatch(helperVerticle, options.getInteger("concurrency-per-provider", 16), items,
+            helperVerticle.traceHeaders(routingContext),
+            result -> routingContext.response()
+                .putHeader("content-type", "application/json; charset=utf-8")
+                .end(result.encode())
+        ).execute();
+    }
+
+    private void prometheusMetrics(RoutingContext routingContext) {
+        helperVerticle.prometheusMetrics(routingContext);
+    }
+
+    private void trace(RoutingContext routingContext) {
+        helperVerticle.traceRequest(routingContext);
+    }
+
+    private void traces(RoutingContext routingContext) {
+        helperVerticle.traces(routingContext);
+    }
+
     private void metrics(RoutingContext routingContext) {
         JsonObject metrics = metricsService.getMetricsSnapshot(vertx);
+        metrics.put("upstreams", helperVerticle.getUpstreamMetrics());
         routingContext.response()
             .putHeader("content-type", "application/json; charset=utf-8")
             .end(Json.encodePrettily(metrics));
@@ -100,6 +150,8 @@ class HomePageHelp {
         endpoints = new ArrayList<>();
         endpoints.add(new EndpointDescription("/orderHat", "to order a hat"));
         endpoints.add(new EndpointDescription("/orderShoe", "to order shoe"));
+        endpoints.add(new EndpointDescription("/orders",
+            "to order a batch of items, POST {\"items\": [{\"product\": \"hat\"}, {\"product\": \"shoe\"}]}"));
     }
 
     public String getDescription() {
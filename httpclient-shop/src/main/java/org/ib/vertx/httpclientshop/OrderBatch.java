@@ -0,0 +1,132 @@
+package org.ib.vertx.httpclientshop;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.ib.vertx.microservicecommonblueprint.RestApiHelperVerticle;
+import org.ib.vertx.microservicecommonblueprint.UpstreamResponse;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Fans the items of a batch order out to their providers and aggregates the per-item results. Items are grouped
+ * by provider and at most <i>concurrency-per-provider</i> requests of a batch are in flight per provider, so a large
+ * batch reuses a few (pipelined) upstream connections instead of flooding the bulkheads. A batch lives on the event
+ * loop of the verticle which received it. The JSON responses of the providers are embedded as they are in the item
+ * results, the other ones as text.
+ */
+public class OrderBatch {
+
+    private static final Map<String, String> PROVIDER_PATHS = new HashMap<>();
+
+    static {
+        PROVIDER_PATHS.put("hat", "/hat-provider/provideHat");
+        PROVIDER_PATHS.put("shoe", "/shoe-provider/provideShoe");
+    }
+
+    private final RestApiHelperVerticle helperVerticle;
+    private final int concurrency;
+    private final JsonArray items;
+    private final MultiMap headers;
+    private final JsonObject[] results;
+    private final Handler<JsonObject> completionHandler;
+    private int pending;
+    private int failed;
+
+    public OrderBatch(RestApiHelperVerticle helperVerticle, int concurrency, JsonArray items, MultiMap headers,
+                      Handler<JsonObject> completionHandler) {
+        this.helperVerticle = helperVerticle;
+        // at least one request per provider, otherwise the batch would never complete
+        this.concurrency = Math.max(concurrency, 1);
+        this.items = items;
+        this.headers = headers;
+        this.results = new JsonObject[items.size()];
+        this.completionHandler = completionHandler;
+    }
+
+    public void execute() {
+        Map<String, Queue<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Object item = items.getValue(i);
+            String product = item instanceof JsonObject ? ((JsonObject) item).getString("product") : null;
+            String path = product == null ? null : PROVIDER_PATHS.get(product);
+            if (path == null) {
+                results[i] = result(i, product).put("status", 400).put("error", "unknown_product");
+                failed++;
+            } else {
+                groups.computeIfAbsent(path, key -> new ArrayDeque<>()).add(i);
+                pending++;
+            }
+        }
+        if (pending == 0) {
+            complete();
+            return;
+        }
+        groups.forEach((path, indexes) -> {
+            for (int i = 0; i < concurrency && !indexes.isEmpty(); i++) {
+                sendNext(path, indexes);
+            }
+        });
+    }
+
+    private void sendNext(String path, Queue<Integer> indexes) {
+        int index = indexes.poll();
+        String product = items.getJsonObject(index).getString("product");
+        helperVerticle.request(HttpMethod.GET, path, headers, null, ar -> {
+            if (ar.succeeded()) {
+                results[index] = result(index, product)
+                    .put("status", ar.result().getStatusCode())
+                    .put("body", body(ar.result()));
+                if (ar.result().getStatusCode() >= 400) {
+                    failed++;
+                }
+            } else {
+                results[index] = result(index, product).put("status", 502).put("error", ar.cause().getMessage());
+                failed++;
+            }
+            if (!indexes.isEmpty()) {
+                sendNext(path, indexes);
+            }
+            if (--pending == 0) {
+                complete();
+            }
+        });
+    }
+
+    private static Object body(UpstreamResponse response) {
+        String contentType = response.getHeaders().get(HttpHeaders.CONTENT_TYPE);
+        Buffer body = response.getBody();
+        if (contentType != null && contentType.toLowerCase().startsWith("application/json")) {
+            String json = body.toString().trim();
+            try {
+                return json.startsWith("[") ? new JsonArray(json) : new JsonObject(json);
+            } catch (DecodeException e) {
+                // embedded as text
+            }
+        }
+        return body.toString();
+    }
+
+    private static JsonObject result(int index, String product) {
+        return new JsonObject().put("index", index).put("product", product);
+    }
+
+    private void complete() {
+        JsonArray itemResults = new JsonArray();
+        for (JsonObject result : results) {
+            itemResults.add(result);
+        }
+        completionHandler.handle(new JsonObject()
+            .put("items", itemResults)
+            .put("succeeded", results.length - failed)
+            .put("failed", failed));
+    }
+}
@@ -0,0 +1,117 @@
+package org.ib.vertx.jmh;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.json.JsonObject;
+import org.ib.vertx.hatserviceprovider.HatApiVerticle;
+import org.ib.vertx.vertxgateway.VertxGatewayApiVerticle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import redis.embedded.RedisServer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Full dispatch chain on loopback, in a single JVM: a client calls a hat provider directly and through a gateway
+ * (routing, load balancing, circuit breakers, bulkheads and upstream client pool). The service discovery uses an
+ * embedded Redis on its usual port, or the one already running there.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DispatchChainBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int REDIS_PORT = 8761;
+    private static final int PROVIDER_PORT = 19081;
+    private static final int GATEWAY_PORT = 18771;
+    // a dedicated api.name, so the chain never reaches providers running outside of the benchmark
+    private static final String PROVIDER_API = "jmh-hat-provider";
+
+    private RedisServer redis;
+    private Vertx vertx;
+    private HttpClient client;
+
+    @Setup
+    public void setUp() throws Exception {
+        try {
+            redis = new RedisServer(REDIS_PORT);
+            redis.start();
+        } catch (RuntimeException e) { // already running
+            redis = null;
+        }
+        vertx = Vertx.vertx();
+        deploy(HatApiVerticle::new, new JsonObject()
+            .put("api.name", PROVIDER_API)
+            .put("service.name", PROVIDER_API)
+            .put("http.address", HOST)
+            .put("http.port", PROVIDER_PORT));
+        deploy(VertxGatewayApiVerticle::new, new JsonObject()
+            .put("api.name", "jmh-vertx-gateway")
+            .put("service.name", "jmh-vertx-gateway")
+            .put("http.address", HOST)
+            .put("http.port", GATEWAY_PORT));
+        client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true).setMaxPoolSize(1));
+        // wait until the gateway has discovered the provider
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!get(GATEWAY_PORT, "/" + PROVIDER_API + "/provideHat").toString().contains("RedHat")) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Gateway did not discover the hat provider");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(ar -> closed.complete(null));
+        closed.get(10, TimeUnit.SECONDS);
+        if (redis != null) {
+            redis.stop();
+        }
+    }
+
+    @Benchmark
+    public Buffer provider() throws Exception {
+        return get(PROVIDER_PORT, "/provideHat");
+    }
+
+    @Benchmark
+    public Buffer gatewayToProvider() throws Exception {
+        return get(GATEWAY_PORT, "/" + PROVIDER_API + "/provideHat");
+    }
+
+    private Buffer get(int port, String uri) throws Exception {
+        CompletableFuture<Buffer> body = new CompletableFuture<>();
+        client.get(port, HOST, uri, response -> response.bodyHandler(body::complete))
+            .exceptionHandler(body::completeExceptionally)
+            .end();
+        return body.get(5, TimeUnit.SECONDS);
+    }
+
+    private void deploy(Supplier<AbstractVerticle> verticle, JsonObject config) throws Exception {
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        vertx.deployVerticle(verticle.get(), new DeploymentOptions().setConfig(config.put("tracing",
+            new JsonObject().put("enabled", false))), ar -> {
+            if (ar.succeeded()) {
+                deployed.complete(ar.result());
+            } else {
+                deployed.completeExceptionally(ar.cause());
+            }
+        });
+        deployed.get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,143 @@
+package org.ib.vertx.jmh;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.ib.vertx.hatserviceprovider.HatApiVerticle;
+import org.ib.vertx.microservicecommonblueprint.EventBusTransport;
+import org.ib.vertx.microservicecommonblueprint.RpcRequest;
+import org.ib.vertx.microservicecommonblueprint.RpcResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import redis.embedded.RedisServer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A call to a hat provider over HTTP (keep-alive connection on loopback) and over the event bus, either within one
+ * Vert.x instance or between two clustered Vert.x instances (Hazelcast on loopback, so the messages go through the
+ * binary codecs and a TCP connection). The provider publishes its records in an embedded Redis on its usual port, or
+ * the one already running there. <i>wireCodec</i> is the encoding and decoding cost of a request and its reply.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventBusTransportBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int REDIS_PORT = 8761;
+    private static final int PROVIDER_PORT = 19082;
+    private static final String PROVIDER_API = "jmh-eb-hat-provider";
+
+    @Param({"false", "true"})
+    private boolean clustered;
+
+    private RedisServer redis;
+    private Vertx providerVertx;
+    private Vertx clientVertx;
+    private HttpClient client;
+    private String address;
+    private final RpcRequest.Codec requestCodec = new RpcRequest.Codec();
+    private final RpcResponse.Codec responseCodec = new RpcResponse.Codec();
+    private RpcRequest request;
+    private RpcResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        try {
+            redis = new RedisServer(REDIS_PORT);
+            redis.start();
+        } catch (RuntimeException e) { // already running
+            redis = null;
+        }
+        if (clustered) {
+            providerVertx = await(handler -> Vertx.clusteredVertx(clusterOptions(), handler));
+            clientVertx = await(handler -> Vertx.clusteredVertx(clusterOptions(), handler));
+        } else {
+            providerVertx = Vertx.vertx();
+            clientVertx = providerVertx;
+        }
+        this.<String>await(handler -> providerVertx.deployVerticle(new HatApiVerticle(), new DeploymentOptions()
+            .setConfig(new JsonObject()
+                .put("api.name", PROVIDER_API)
+                .put("service.name", PROVIDER_API)
+                .put("http.address", HOST)
+                .put("http.port", PROVIDER_PORT)
+                .put("event-bus", new JsonObject().put("enabled", true))
+                .put("tracing", new JsonObject().put("enabled", false))), handler));
+        EventBusTransport.registerCodecs(clientVertx);
+        address = EventBusTransport.address(providerVertx, PROVIDER_API);
+        client = clientVertx.createHttpClient(new HttpClientOptions().setKeepAlive(true).setMaxPoolSize(1));
+        request = new RpcRequest(HttpMethod.GET, "/provideHat", MultiMap.caseInsensitiveMultiMap(), null);
+        response = eventBus();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.<Void>await(providerVertx::close);
+        if (clientVertx != providerVertx) {
+            this.<Void>await(clientVertx::close);
+        }
+        if (redis != null) {
+            redis.stop();
+        }
+    }
+
+    @Benchmark
+    public Buffer http() throws Exception {
+        CompletableFuture<Buffer> body = new CompletableFuture<>();
+        client.get(PROVIDER_PORT, HOST, "/provideHat", response -> response.bodyHandler(body::complete))
+            .exceptionHandler(body::completeExceptionally)
+            .end();
+        return body.get(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public RpcResponse eventBus() throws Exception {
+        Message<RpcResponse> reply = await(handler -> clientVertx.eventBus().send(address, request, handler));
+        return reply.body();
+    }
+
+    @Benchmark
+    public RpcResponse wireCodec() {
+        Buffer wire = Buffer.buffer(64);
+        requestCodec.encodeToWire(wire, request);
+        RpcRequest decoded = requestCodec.decodeFromWire(0, wire);
+        wire = Buffer.buffer(128);
+        responseCodec.encodeToWire(wire, new RpcResponse(200, decoded.getHeaders(), response.getBody()));
+        return responseCodec.decodeFromWire(0, wire);
+    }
+
+    private static VertxOptions clusterOptions() {
+        return new VertxOptions().setClustered(true).setClusterHost(HOST);
+    }
+
+    private <T> T await(Handler<Handler<AsyncResult<T>>> operation) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        operation.handle(ar -> {
+            if (ar.succeeded()) {
+                result.complete(ar.result());
+            } else {
+                result.completeExceptionally(ar.cause());
+            }
+        });
+        return result.get(60, TimeUnit.SECONDS);
+    }
+}
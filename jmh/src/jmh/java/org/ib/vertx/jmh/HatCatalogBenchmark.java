@@ -0,0 +1,90 @@
+package org.ib.vertx.jmh;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.ib.vertx.hatserviceprovider.HatCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries of a generated {@link HatCatalog}: a page by price range, by name prefix and by both, and the loading of
+ * the whole catalog from its memory-mapped snapshot or by generating and indexing it again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HatCatalogBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    private Path directory;
+    private HatCatalog catalog;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("hat-catalog");
+        catalog = load(true);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(directory.resolve("hat-catalog.snapshot"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public JsonObject priceRange() {
+        return catalog.query(null, 2000, 4000, 3, 20).toJson();
+    }
+
+    @Benchmark
+    public JsonObject namePrefix() {
+        return catalog.query("blueb", 0, Integer.MAX_VALUE, 3, 20).toJson();
+    }
+
+    @Benchmark
+    public JsonObject namePrefixAndPriceRange() {
+        return catalog.query("red", 2000, 4000, 3, 20).toJson();
+    }
+
+    @Benchmark
+    public HatCatalog loadSnapshot() throws Exception {
+        return load(true);
+    }
+
+    @Benchmark
+    public HatCatalog generate() throws Exception {
+        return load(false);
+    }
+
+    /**
+     * Loads the catalog in a fresh Vert.x instance, as at the start of a hat provider.
+     */
+    private HatCatalog load(boolean snapshot) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            JsonObject options = new JsonObject()
+                .put("file", directory.resolve("hats.json").toString())
+                .put("generate", size);
+            if (snapshot) {
+                options.put("snapshot", directory.resolve("hat-catalog.snapshot").toString());
+            }
+            return HatCatalog.getOrCreate(vertx, options, Collections.emptyList());
+        } finally {
+            vertx.close();
+        }
+    }
+}
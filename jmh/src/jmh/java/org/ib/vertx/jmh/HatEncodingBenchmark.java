@@ -0,0 +1,75 @@
+package org.ib.vertx.jmh;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.ib.vertx.hatserviceprovider.Hat;
+import org.ib.vertx.hatserviceprovider.HatMenu;
+import org.ib.vertx.hatserviceprovider.OrderResponseWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response building of the hat provider: {@link Hat} JSON encoding of the menu, per request or pre-encoded by
+ * {@link HatMenu}, and the <i>orderHat</i> response formatting, with the former String.format or the
+ * {@link OrderResponseWriter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HatEncodingBenchmark {
+
+    private final List<Hat> hats = Arrays.asList(new Hat("RedHat", "80 Euro"), new Hat("YellowHat", "60 Euro"));
+    private Vertx vertx;
+    private HatMenu hatMenu;
+    private OrderResponseWriter orderResponseWriter;
+
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        hatMenu = HatMenu.getOrCreate(vertx, true, hats);
+        orderResponseWriter = new OrderResponseWriter(Thread.currentThread().getName(), "RedHat");
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public Buffer encodeHatMenuPrettily() {
+        return Buffer.buffer(Json.encodePrettily(hats));
+    }
+
+    @Benchmark
+    public Buffer encodeHatMenu() {
+        return Buffer.buffer(Json.encode(hats));
+    }
+
+    @Benchmark
+    public Buffer preEncodedHatMenu() {
+        return hatMenu.getBody();
+    }
+
+    @Benchmark
+    public Buffer formatOrderHat() {
+        return Buffer.buffer(String.format("[HatProvider-%s][ResponseId-%d]-%s", Thread.currentThread().getName(),
+            ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE), "RedHat"));
+    }
+
+    @Benchmark
+    public Buffer writeOrderHat() {
+        return orderResponseWriter.write(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
+    }
+}
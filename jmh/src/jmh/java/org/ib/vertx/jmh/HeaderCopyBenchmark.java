@@ -0,0 +1,80 @@
+package org.ib.vertx.jmh;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.impl.HeadersAdaptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header copying of {@code RestApiHelperVerticle.doDispatch}, on the netty backed headers used by the Vert.x HTTP
+ * server and client: request headers to the upstream request, upstream response headers to the client response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HeaderCopyBenchmark {
+
+    private MultiMap requestHeaders;
+    private MultiMap responseHeaders;
+
+    @Setup
+    public void setUp() {
+        requestHeaders = new HeadersAdaptor(new DefaultHttpHeaders())
+            .add("Host", "localhost:8771")
+            .add("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:62.0) Gecko/20100101 Firefox/62.0")
+            .add("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+            .add("Accept-Language", "en-US,en;q=0.5")
+            .add("Accept-Encoding", "gzip, deflate")
+            .add("Connection", "keep-alive")
+            .add("Cookie", "session=8c6976e5b5410415bde908bd4dee15dfb167a9c873fc4bb8a81f6f2ab448a918")
+            .add("Upgrade-Insecure-Requests", "1")
+            .add("Cache-Control", "max-age=0")
+            .add("traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+        responseHeaders = new HeadersAdaptor(new DefaultHttpHeaders())
+            .add("content-type", "application/json; charset=utf-8")
+            .add("content-length", "52")
+            .add("etag", "\"5d41402abc4b2a76b9719d911017c592\"")
+            .add("cache-control", "max-age=5")
+            .add("connection", "keep-alive");
+    }
+
+    /**
+     * The request header copy of doDispatch, header by header.
+     */
+    @Benchmark
+    public MultiMap copyRequestHeaders() {
+        MultiMap upstream = new HeadersAdaptor(new DefaultHttpHeaders());
+        requestHeaders.forEach(header -> upstream.add(header.getKey(), header.getValue()));
+        return upstream;
+    }
+
+    @Benchmark
+    public MultiMap copyRequestHeadersAddAll() {
+        return new HeadersAdaptor(new DefaultHttpHeaders()).addAll(requestHeaders);
+    }
+
+    /**
+     * The response header copy of copyResponseHeaders, skipping the hop-by-hop headers.
+     */
+    @Benchmark
+    public MultiMap copyResponseHeaders() {
+        MultiMap client = new HeadersAdaptor(new DefaultHttpHeaders());
+        responseHeaders.forEach(header -> {
+            if (!HttpHeaders.TRANSFER_ENCODING.toString().equalsIgnoreCase(header.getKey())
+                && !HttpHeaders.CONNECTION.toString().equalsIgnoreCase(header.getKey())
+                && !HttpHeaders.KEEP_ALIVE.toString().equalsIgnoreCase(header.getKey())) {
+                client.add(header.getKey(), header.getValue());
+            }
+        });
+        return client;
+    }
+}
@@ -0,0 +1,50 @@
+package org.ib.vertx.jmh;
+
+import io.vertx.servicediscovery.Record;
+import org.ib.vertx.microservicecommonblueprint.EndpointStats;
+import org.ib.vertx.microservicecommonblueprint.LoadBalancer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Record selection of {@code RestApiHelperVerticle.dispatchRequests}, per load balancer strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoadBalancerBenchmark {
+
+    @Param({LoadBalancer.ROUND_ROBIN, LoadBalancer.LEAST_OUTSTANDING, LoadBalancer.POWER_OF_TWO_CHOICES,
+        LoadBalancer.WEIGHTED})
+    private String strategy;
+
+    @Param({"1", "3", "16"})
+    private int endpointCount;
+
+    private List<Record> endpoints;
+    private LoadBalancer loadBalancer;
+
+    @Setup
+    public void setUp() {
+        endpoints = RoutingBenchmark.records("hat-provider", endpointCount);
+        Map<String, EndpointStats> stats = new HashMap<>();
+        endpoints.forEach(record -> stats.put(record.getRegistration(), new EndpointStats()));
+        loadBalancer = LoadBalancer.create(strategy, record -> stats.get(record.getRegistration()));
+    }
+
+    @Benchmark
+    public Record select() {
+        return loadBalancer.select(endpoints);
+    }
+}
@@ -0,0 +1,69 @@
+package org.ib.vertx.jmh;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.servicediscovery.Record;
+import io.vertx.servicediscovery.types.HttpEndpoint;
+import org.ib.vertx.microservicecommonblueprint.RouteTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefix parsing of {@code RestApiHelperVerticle.dispatchRequests}: route lookup in the precompiled
+ * {@link RouteTable} and forward path computation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoutingBenchmark {
+
+    @Param({"/hat-provider/provideHat", "/shop/orderHat?size=42", "/unknown-provider/provideHat"})
+    private String uriPath;
+
+    private RouteTable routeTable;
+
+    @Setup
+    public void setUp() {
+        Map<String, List<Record>> apis = new HashMap<>();
+        apis.put("hat-provider", records("hat-provider", 3));
+        apis.put("shoe-provider", records("shoe-provider", 1));
+        apis.put("http-client-shop", records("http-client-shop", 2));
+        for (int i = 0; i < 20; i++) {
+            apis.put("api-" + i, records("api-" + i, 1));
+        }
+        JsonArray rules = new JsonArray().add(new JsonObject()
+            .put("prefix", "/shop")
+            .put("api.name", "http-client-shop")
+            .put("strip-prefix", true));
+        routeTable = RouteTable.build(1, apis, rules);
+    }
+
+    @Benchmark
+    public String matchRoute() {
+        RouteTable.Route route = routeTable.match(uriPath);
+        return route == null ? null : route.forwardPath(uriPath);
+    }
+
+    static List<Record> records(String apiName, int count) {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(HttpEndpoint.createRecord(apiName, "127.0.0.1", 9000 + i, "/",
+                new JsonObject().put("api.name", apiName).put("weight", 1))
+                .setRegistration(UUID.randomUUID().toString()));
+        }
+        return records;
+    }
+}
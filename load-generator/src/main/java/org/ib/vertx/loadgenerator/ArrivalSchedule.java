@@ -0,0 +1,40 @@
+package org.ib.vertx.loadgenerator;
+
+/**
+ * Intended start times of an open workload: the arrival rate grows linearly from zero during the ramp-up and then
+ * stays constant, independently of how fast the target answers.
+ */
+public class ArrivalSchedule {
+
+    private final double rate;
+    private final long rampUpNanos;
+    private final long rampUpRequests;
+    private final long totalRequests;
+
+    /**
+     * @param rate the arrival rate after the ramp-up, in requests per second
+     * @param rampUpNanos the ramp-up duration
+     * @param durationNanos the whole run duration, ramp-up included
+     */
+    public ArrivalSchedule(double rate, long rampUpNanos, long durationNanos) {
+        this.rate = rate;
+        this.rampUpNanos = rampUpNanos;
+        this.rampUpRequests = (long) (rate * rampUpNanos / 2e9);
+        this.totalRequests = rampUpRequests + (long) (rate * (durationNanos - rampUpNanos) / 1e9);
+    }
+
+    /**
+     * @return the intended start of the given request, in nanoseconds from the start of the run
+     */
+    public long intendedStart(long request) {
+        if (request < rampUpRequests) {
+            // rate * t^2 / (2 * ramp-up) requests are started at t
+            return (long) Math.sqrt(2.0 * request * rampUpNanos * 1e9 / rate);
+        }
+        return rampUpNanos + (long) ((request - rampUpRequests) * 1e9 / rate);
+    }
+
+    public long getTotalRequests() {
+        return totalRequests;
+    }
+}
@@ -0,0 +1,185 @@
+package org.ib.vertx.loadgenerator;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.apache.log4j.Logger;
+import rx.functions.Action1;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.ib.vertx.microservicecommonblueprint.ConfigRetrieverHelper.CONFIG_RETRIEVER_HELPER;
+import static org.ib.vertx.microservicecommonblueprint.DeploymentHelper.createVertxOptions;
+
+/**
+ * Open model load generator: runs the ramp-up, warm-up and measurement phases against <i>target.url</i> and writes
+ * the results into <i>results.dir</i>. Every setting of <i>application.json</i> can be overridden by a system
+ * property, e.g. <i>-Drate=2000 -Dtarget.url=http://localhost:9081/provideHat</i>.
+ * <p>
+ * When <i>runs</i> lists several runs (each overriding some of the settings, e.g. <i>target.protocol</i>), they are
+ * run one after the other and their throughput and latencies are compared side by side in one more result file.
+ */
+public class LoadGeneratorApplication {
+
+    private final static Logger logger = Logger.getLogger(LoadGeneratorApplication.class);
+
+    public static final String TARGET_URL = "target.url";
+    public static final String H2C = "h2c";
+
+    private static Vertx vertx;
+
+    public static void main(String[] args) {
+        logger.info("Java Version [" + System.getProperty("java.version") + "]");
+
+        vertx = Vertx.vertx(createVertxOptions("application.json"));
+
+        CONFIG_RETRIEVER_HELPER
+            .fromFileStore("application.json")
+            .fromSystem()
+            .createConfig(vertx)
+            .first()
+            .subscribe(configReady);
+    }
+
+    public static Action1<JsonObject> configReady = config -> {
+        String started = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        JsonArray runs = config.getJsonArray("runs", new JsonArray());
+        List<JsonObject> runConfigs = runs.isEmpty() ? Collections.singletonList(config) :
+            runs.stream().map(run -> config.copy().mergeIn((JsonObject) run)).collect(Collectors.toList());
+        runAll(runConfigs, 0, started, new JsonArray());
+    };
+
+    private static void runAll(List<JsonObject> configs, int index, String started, JsonArray summaries) {
+        if (index == configs.size()) {
+            if (configs.size() > 1) {
+                writeComparison(configs.get(0), started, summaries);
+            } else {
+                vertx.close();
+            }
+            return;
+        }
+        run(configs.get(index), started, results -> {
+            if (results != null) {
+                summaries.add(summary(results));
+            }
+            runAll(configs, index + 1, started, summaries);
+        });
+    }
+
+    private static void run(JsonObject config, String started, Handler<JsonObject> resultsHandler) {
+        LoadReport report = new LoadReport();
+        // leave the instances the time to be deployed before the first request is due
+        long startNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        @SuppressWarnings("rawtypes") // CompositeFuture#all takes a raw list
+        List<Future> done = new ArrayList<>();
+        int instances = config.getInteger("verticle.instances", 1);
+
+        vertx.deployVerticle(() -> {
+            Future<Void> instanceDone = Future.future();
+            done.add(instanceDone);
+            return new LoadGeneratorVerticle(report, startNanos, done.size() - 1, instanceDone);
+        }, new DeploymentOptions().setConfig(config).setInstances(instances), deployed -> {
+            if (deployed.failed()) {
+                logger.error("Failed to start the load generator", deployed.cause());
+                resultsHandler.handle(null);
+                return;
+            }
+            long progressTimer = vertx.setPeriodic(1000, id -> logger.info(report.progress()));
+            CompositeFuture.all(done).setHandler(ar -> {
+                vertx.cancelTimer(progressTimer);
+                vertx.undeploy(deployed.result(), undeployed -> writeResults(config, report, started, resultsHandler));
+            });
+        });
+    }
+
+    private static void writeResults(JsonObject config, LoadReport report, String started,
+                                     Handler<JsonObject> resultsHandler) {
+        JsonObject run = new JsonObject()
+            .put("name", config.getString("run.name", "load"))
+            .put("started", started)
+            .put("target", new JsonObject()
+                .put("url", config.getString(TARGET_URL))
+                .put("method", config.getString("target.method", "GET"))
+                .put("protocol", config.getString("target.protocol", "HTTP/1.1")))
+            .put("rate", config.getDouble("rate", 1000.0))
+            .put("phases", new JsonObject()
+                .put("ramp-up-seconds", config.getLong("ramp-up.seconds", 10L))
+                .put("warm-up-seconds", config.getLong("warm-up.seconds", 20L))
+                .put("measurement-seconds", config.getLong("measurement.seconds", 60L)))
+            .put("max-connections", config.getInteger("max-connections", 50))
+            .put("max-streams", config.getInteger("max-streams", -1))
+            .put("verticle.instances", config.getInteger("verticle.instances", 1));
+        JsonObject results = report.toJson(run, config.getLong("measurement.seconds", 60L));
+        logger.info("Results " + results.encodePrettily());
+
+        vertx.<File>executeBlocking(future -> {
+            try {
+                future.complete(report.write(new File(config.getString("results.dir", "results/load")),
+                    run.getString("name") + "-" + started, results));
+            } catch (Exception e) {
+                future.fail(e);
+            }
+        }, ar -> {
+            if (ar.succeeded()) {
+                logger.info("Results written to " + ar.result().getAbsolutePath());
+            } else {
+                logger.error("Failed to write the results", ar.cause());
+            }
+            resultsHandler.handle(results);
+        });
+    }
+
+    private static JsonObject summary(JsonObject results) {
+        JsonObject measurement = results.getJsonObject("measurement");
+        JsonObject corrected = results.getJsonObject("latency-ms").getJsonObject("corrected");
+        return new JsonObject()
+            .put("name", results.getString("name"))
+            .put("url", results.getJsonObject("target").getString("url"))
+            .put("protocol", results.getJsonObject("target").getString("protocol"))
+            .put("rate", results.getDouble("rate"))
+            .put("throughput", measurement.getDouble("throughput"))
+            .put("errors", measurement.getLong("errors"))
+            .put("skipped", measurement.getLong("skipped"))
+            .put("latency-ms", new JsonObject()
+                .put("p50", corrected.getDouble("p50"))
+                .put("p90", corrected.getDouble("p90"))
+                .put("p99", corrected.getDouble("p99"))
+                .put("p99.9", corrected.getDouble("p99.9"))
+                .put("max", corrected.getDouble("max")));
+    }
+
+    private static void writeComparison(JsonObject config, String started, JsonArray summaries) {
+        JsonObject comparison = new JsonObject().put("started", started).put("runs", summaries);
+        logger.info("Comparison " + comparison.encodePrettily());
+        File file = new File(config.getString("results.dir", "results/load"), "comparison-" + started + ".json");
+        vertx.executeBlocking(future -> {
+            try {
+                Files.createDirectories(file.getParentFile().toPath());
+                Files.write(file.toPath(), comparison.encodePrettily().getBytes(StandardCharsets.UTF_8));
+                future.complete();
+            } catch (Exception e) {
+                future.fail(e);
+            }
+        }, ar -> {
+            if (ar.succeeded()) {
+                logger.info("Comparison written to " + file.getAbsolutePath());
+            } else {
+                logger.error("Failed to write the comparison", ar.cause());
+            }
+            vertx.close();
+        });
+    }
+}
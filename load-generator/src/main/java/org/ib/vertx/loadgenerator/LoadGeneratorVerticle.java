@@ -0,0 +1,168 @@
+package org.ib.vertx.loadgenerator;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import org.apache.log4j.Logger;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the requests of its share of the {@link ArrivalSchedule} at their intended start, whether or not the previous
+ * ones were answered, and reports their outcome. The schedule is checked every millisecond, so a request is sent at
+ * most about a millisecond late; any further delay (e.g. a stalled event loop or a saturated connection pool) counts
+ * in its corrected latency.
+ */
+public class LoadGeneratorVerticle extends AbstractVerticle {
+
+    private final static Logger logger = Logger.getLogger(LoadGeneratorVerticle.class);
+
+    private final LoadReport report;
+    private final long startNanos;
+    private final int index;
+    private final Future<Void> done;
+
+    private HttpClient client;
+    private HttpMethod method;
+    private String host;
+    private int port;
+    private String uri;
+    private Buffer body;
+    private long timeout;
+    private int maxOutstanding;
+    private ArrivalSchedule schedule;
+    private long offset;
+    private long measurementStart;
+    private long measurementEnd;
+    private long next;
+    private int outstanding;
+
+    /**
+     * @param startNanos the {@link System#nanoTime()} the schedule starts at, shared by all instances
+     * @param index the index of this instance, staggering its requests with the ones of the other instances
+     * @param done completed once all the requests of this instance have ended
+     */
+    public LoadGeneratorVerticle(LoadReport report, long startNanos, int index, Future<Void> done) {
+        this.report = report;
+        this.startNanos = startNanos;
+        this.index = index;
+        this.done = done;
+    }
+
+    @Override
+    public void start() {
+        JsonObject config = config();
+        URI url = URI.create(config.getString(LoadGeneratorApplication.TARGET_URL));
+        method = HttpMethod.valueOf(config.getString("target.method", "GET").toUpperCase());
+        host = url.getHost();
+        port = url.getPort() != -1 ? url.getPort() : 80;
+        uri = url.getRawPath() + (url.getRawQuery() != null ? "?" + url.getRawQuery() : "");
+        body = config.getString("target.body") != null ? Buffer.buffer(config.getString("target.body")) : null;
+        timeout = config.getLong("request.timeout", 5000L);
+
+        int instances = config.getInteger("verticle.instances", 1);
+        double rate = config.getDouble("rate", 1000.0) / instances;
+        long rampUp = TimeUnit.SECONDS.toNanos(config.getLong("ramp-up.seconds", 10L));
+        measurementStart = rampUp + TimeUnit.SECONDS.toNanos(config.getLong("warm-up.seconds", 20L));
+        measurementEnd = measurementStart + TimeUnit.SECONDS.toNanos(config.getLong("measurement.seconds", 60L));
+        schedule = new ArrivalSchedule(rate, rampUp, measurementEnd);
+        offset = (long) (index * 1e9 / (rate * instances));
+        maxOutstanding = config.getInteger("max-outstanding", 10000) / instances;
+
+        // over h2c the same number of connections is opened, each multiplexing up to max-streams requests
+        int connections = Math.max(config.getInteger("max-connections", 50) / instances, 1);
+        boolean h2c = LoadGeneratorApplication.H2C.equalsIgnoreCase(config.getString("target.protocol", "HTTP/1.1"));
+        client = vertx.createHttpClient(new HttpClientOptions()
+            .setMaxPoolSize(connections)
+            .setKeepAlive(true)
+            .setPipelining(false)
+            .setProtocolVersion(h2c ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1)
+            .setHttp2ClearTextUpgrade(false)
+            .setHttp2MaxPoolSize(connections)
+            .setHttp2MultiplexingLimit(config.getInteger("max-streams", -1)));
+
+        logger.info("Load generator [" + index + "] sending " + schedule.getTotalRequests() + " request(s) to " +
+            method + " " + url + " at " + rate + " request(s)/s");
+        vertx.setPeriodic(1, this::tick);
+    }
+
+    @Override
+    public void stop() {
+        client.close();
+    }
+
+    private void tick(long timerId) {
+        long now = System.nanoTime() - startNanos;
+        while (next < schedule.getTotalRequests()) {
+            long intended = schedule.intendedStart(next) + offset;
+            if (intended > now) {
+                return;
+            }
+            next++;
+            send(intended);
+        }
+        vertx.cancelTimer(timerId);
+        if (outstanding == 0) {
+            done.tryComplete();
+        } else {
+            // do not wait forever for requests whose connection hangs
+            vertx.setTimer(timeout + 1000, id -> done.tryComplete());
+        }
+    }
+
+    private void send(long intended) {
+        if (outstanding >= maxOutstanding) {
+            report.onSkipped(isMeasured(intended), TimeUnit.MILLISECONDS.toNanos(timeout));
+            return;
+        }
+        outstanding++;
+        Call call = new Call(intended, System.nanoTime());
+        report.onSent(call.sent - startNanos - intended);
+        HttpClientRequest request = client.request(method, port, host, uri, response -> {
+            response.exceptionHandler(e -> onEnd(call, 0));
+            response.endHandler(v -> onEnd(call, response.statusCode()));
+        });
+        request.exceptionHandler(e -> onEnd(call, 0));
+        request.setTimeout(timeout);
+        if (body != null) {
+            request.end(body);
+        } else {
+            request.end();
+        }
+    }
+
+    private void onEnd(Call call, int statusCode) {
+        if (call.ended) {
+            return;
+        }
+        call.ended = true;
+        outstanding--;
+        long now = System.nanoTime();
+        report.onEnd(isMeasured(call.intended), statusCode, now - startNanos - call.intended, now - call.sent);
+        if (outstanding == 0 && next == schedule.getTotalRequests()) {
+            done.tryComplete();
+        }
+    }
+
+    private boolean isMeasured(long intended) {
+        return intended >= measurementStart && intended < measurementEnd;
+    }
+
+    private static class Call {
+        private final long intended;
+        private final long sent;
+        private boolean ended;
+
+        private Call(long intended, long sent) {
+            this.intended = intended;
+            this.sent = sent;
+        }
+    }
+}
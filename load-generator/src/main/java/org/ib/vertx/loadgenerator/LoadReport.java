@@ -0,0 +1,182 @@
+package org.ib.vertx.loadgenerator;
+
+import io.vertx.core.json.JsonObject;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of a load run, shared by all generator instances. Latencies of the measurement phase are recorded twice:
+ * <i>corrected</i> from the intended start of each request (what a user arriving on schedule sees, free of
+ * coordinated omission) and <i>uncorrected</i> from the moment the request was actually sent. Failed requests are
+ * recorded as well, with the time they took to fail, and the requests skipped because too many were outstanding
+ * count in the corrected latencies as failures at the request timeout.
+ */
+public class LoadReport {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Recorder corrected = new Recorder(3);
+    private final Recorder uncorrected = new Recorder(3);
+    private Histogram correctedTotal;
+    private Histogram uncorrectedTotal;
+    private Histogram correctedInterval;
+    private Histogram uncorrectedInterval;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder[] measuredStatuses = new LongAdder[6];
+    private final LongAdder measuredErrors = new LongAdder();
+    private final LongAdder measuredSkipped = new LongAdder();
+    private final AtomicLong maxSendLag = new AtomicLong();
+    private long lastSent;
+    private long lastCompleted;
+
+    public LoadReport() {
+        for (int i = 0; i < measuredStatuses.length; i++) {
+            measuredStatuses[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param lagNanos how late the request was sent compared to its intended start
+     */
+    public void onSent(long lagNanos) {
+        sent.increment();
+        long max = maxSendLag.get();
+        while (lagNanos > max && !maxSendLag.compareAndSet(max, lagNanos)) {
+            max = maxSendLag.get();
+        }
+    }
+
+    /**
+     * A request not sent because too many requests were outstanding. Its user would have waited at least the
+     * request timeout, the corrected latency recorded when it was scheduled in the measurement phase.
+     */
+    public void onSkipped(boolean measured, long timeoutNanos) {
+        skipped.increment();
+        if (!measured) {
+            return;
+        }
+        measuredSkipped.increment();
+        corrected.recordValue(TimeUnit.NANOSECONDS.toMicros(timeoutNanos));
+    }
+
+    /**
+     * @param statusCode the response status, 0 when the request failed
+     */
+    public void onEnd(boolean measured, int statusCode, long correctedNanos, long uncorrectedNanos) {
+        completed.increment();
+        if (!measured) {
+            return;
+        }
+        if (statusCode == 0) {
+            measuredErrors.increment();
+        } else {
+            measuredStatuses[Math.min(statusCode / 100, 5)].increment();
+        }
+        corrected.recordValue(Math.max(TimeUnit.NANOSECONDS.toMicros(correctedNanos), 0));
+        uncorrected.recordValue(Math.max(TimeUnit.NANOSECONDS.toMicros(uncorrectedNanos), 0));
+    }
+
+    /**
+     * @return the progress since the previous call, as a log line
+     */
+    public synchronized String progress() {
+        drain();
+        long sentNow = sent.sum();
+        long completedNow = completed.sum();
+        String line = String.format("sent %d/s, completed %d/s, outstanding %d, corrected p99 %.3f ms, " +
+                "uncorrected p99 %.3f ms", sentNow - lastSent, completedNow - lastCompleted, sentNow - completedNow,
+            correctedInterval.getValueAtPercentile(99) / MICROS_PER_MILLI,
+            uncorrectedInterval.getValueAtPercentile(99) / MICROS_PER_MILLI);
+        lastSent = sentNow;
+        lastCompleted = completedNow;
+        return line;
+    }
+
+    /**
+     * @param run the run settings, completed with the results
+     */
+    public synchronized JsonObject toJson(JsonObject run, double measurementSeconds) {
+        drain();
+        long measured = correctedTotal.getTotalCount();
+        long measuredSent = uncorrectedTotal.getTotalCount();
+        JsonObject statuses = new JsonObject();
+        for (int i = 1; i < measuredStatuses.length; i++) {
+            statuses.put(i + "xx", measuredStatuses[i].sum());
+        }
+        return run
+            .put("requests", new JsonObject()
+                .put("sent", sent.sum())
+                .put("completed", completed.sum())
+                .put("skipped", skipped.sum())
+                .put("unfinished", sent.sum() - completed.sum()))
+            .put("measurement", new JsonObject()
+                .put("requests", measured)
+                .put("throughput", measuredSent / measurementSeconds)
+                .put("statuses", statuses)
+                .put("errors", measuredErrors.sum())
+                .put("skipped", measuredSkipped.sum())
+                .put("max-send-lag-ms", maxSendLag.get() / 1e6))
+            .put("latency-ms", new JsonObject()
+                .put("corrected", toJson(correctedTotal))
+                .put("uncorrected", toJson(uncorrectedTotal)));
+    }
+
+    /**
+     * Writes the results as JSON and the corrected latency distribution in the HdrHistogram percentile format.
+     *
+     * @return the JSON file written
+     */
+    public File write(File directory, String name, JsonObject results) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory [" + directory + "]");
+        }
+        File json = new File(directory, name + ".json");
+        Files.write(json.toPath(), results.encodePrettily().getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(new File(directory, name + ".hgrm")), false,
+                StandardCharsets.UTF_8.name())) {
+                correctedTotal.outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+        }
+        return json;
+    }
+
+    private void drain() {
+        correctedInterval = corrected.getIntervalHistogram(correctedInterval);
+        uncorrectedInterval = uncorrected.getIntervalHistogram(uncorrectedInterval);
+        if (correctedTotal == null) {
+            correctedTotal = correctedInterval.copy();
+            uncorrectedTotal = uncorrectedInterval.copy();
+        } else {
+            correctedTotal.add(correctedInterval);
+            uncorrectedTotal.add(uncorrectedInterval);
+        }
+    }
+
+    private static JsonObject toJson(Histogram histogram) {
+        return new JsonObject()
+            .put("count", histogram.getTotalCount())
+            .put("min", histogram.getMinValue() / MICROS_PER_MILLI)
+            .put("mean", histogram.getMean() / MICROS_PER_MILLI)
+            .put("p50", histogram.getValueAtPercentile(50) / MICROS_PER_MILLI)
+            .put("p90", histogram.getValueAtPercentile(90) / MICROS_PER_MILLI)
+            .put("p99", histogram.getValueAtPercentile(99) / MICROS_PER_MILLI)
+            .put("p99.9", histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI)
+            .put("p99.99", histogram.getValueAtPercentile(99.99) / MICROS_PER_MILLI)
+            .put("max", histogram.getMaxValue() / MICROS_PER_MILLI)
+            .put("stddev", histogram.getStdDeviation() / MICROS_PER_MILLI);
+    }
+}
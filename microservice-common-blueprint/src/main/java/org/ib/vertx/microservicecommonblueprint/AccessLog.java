@@ -0,0 +1,335 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.servicediscovery.Record;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access log (one JSON object per line) written off the event loops. A request is logged by claiming a
+ * slot of a preallocated lock-free ring buffer of <i>buffer-size</i> entries and copying its fields into it, nothing
+ * is formatted nor allocated on the event loop; when the buffer is full the record is dropped and counted, the event
+ * loop never waits. A background thread drains the buffer in batches, formats the records and writes them through a
+ * {@link FileChannel} into <i>file</i>, rolled once it exceeds <i>max-file-size</i> bytes (the last <i>max-files</i>
+ * are kept). One access log is shared by all the verticle instances of a JVM, its writer stops once the last one
+ * has released it.
+ */
+public class AccessLog implements Shareable {
+
+    private final static Logger logger = Logger.getLogger(AccessLog.class);
+    // longer paths and errors are truncated to this many encoded bytes, so a line always fits in the room left in
+    // a batch
+    private static final int MAX_FIELD_BYTES = 1024;
+    private static final int MAX_LINE_BYTES = 8192;
+
+    /** {@link io.vertx.ext.web.RoutingContext} key of the upstream {@link Record} the request was sent to. */
+    public static final String UPSTREAM = "access-log.upstream";
+    /** {@link io.vertx.ext.web.RoutingContext} key of the failure of the request, if any. */
+    public static final String ERROR = "access-log.error";
+
+    private final Path file;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final long flushIntervalNanos;
+
+    // multi-producer single-consumer ring: a slot is free for the producer of position p when its sequence is p,
+    // and readable by the consumer when it is p + 1
+    private final Entry[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rolled = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+    private final AtomicLong formatErrors = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+    // guarded by the class lock
+    private int users;
+
+    private AccessLog(JsonObject options) {
+        this.file = Paths.get(options.getString("file", "logs/access.log"));
+        this.maxFileSize = options.getLong("max-file-size", 100L * 1024 * 1024);
+        this.maxFiles = options.getInteger("max-files", 5);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(options.getLong("flush-interval", 100L));
+        // rounded up to a power of two, so the slot of a record is a mask of its position
+        int size = Integer.highestOneBit(Math.max(2, options.getInteger("buffer-size", 65536)) * 2 - 1);
+        this.entries = new Entry[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.writer = new Thread(this::drainLoop, "access-log-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * @return the access log of this JVM, every caller must {@link #release(Vertx)} it
+     */
+    public static synchronized AccessLog getOrCreate(Vertx vertx, JsonObject options) {
+        LocalMap<String, AccessLog> shared = vertx.sharedData().getLocalMap(AccessLog.class.getName());
+        AccessLog accessLog = shared.get("access-log");
+        if (accessLog == null) {
+            accessLog = new AccessLog(options);
+            accessLog.writer.start();
+            shared.put("access-log", accessLog);
+        }
+        accessLog.users++;
+        return accessLog;
+    }
+
+    /**
+     * Stops the writer once the last user has released the access log, after it has written the pending records.
+     */
+    public void release(Vertx vertx) {
+        synchronized (AccessLog.class) {
+            if (--users > 0) {
+                return;
+            }
+            vertx.sharedData().<String, AccessLog>getLocalMap(AccessLog.class.getName())
+                .removeIfPresent("access-log", this);
+        }
+        running = false;
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Logs a request, from any thread, without blocking.
+     *
+     * @param upstream the upstream {@link Record} the request was sent to, if any
+     * @return false if the record was dropped because the buffer is full
+     */
+    public boolean log(HttpMethod method, String path, Object upstream, int status, long bytes, long latencyNanos,
+                       String error) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (sequence < position) { // the writer did not drain this slot yet
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        int slot = (int) (position & mask);
+        Entry entry = entries[slot];
+        entry.time = System.currentTimeMillis();
+        entry.method = method;
+        entry.path = path;
+        entry.upstream = upstream;
+        entry.status = status;
+        entry.bytes = bytes;
+        entry.latencyNanos = latencyNanos;
+        entry.error = error;
+        sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("file", file.toString())
+            .put("written", written.get())
+            .put("dropped", dropped.get())
+            .put("pending", Math.max(0, tail.get() - head))
+            .put("rolled", rolled.get())
+            .put("write-errors", writeErrors.get())
+            .put("format-errors", formatErrors.get());
+    }
+
+    private void drainLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+        StringBuilder line = new StringBuilder(256);
+        FileChannel channel = null;
+        long size = 0;
+        while (true) {
+            // read before draining, so the records logged before the release are written
+            boolean stopping = !running;
+            int drained = 0;
+            buffer.clear();
+            while (buffer.remaining() >= MAX_LINE_BYTES) {
+                int slot = (int) (head & mask);
+                if (sequences.get(slot) != head + 1) {
+                    break;
+                }
+                int start = buffer.position();
+                try {
+                    format(entries[slot], line);
+                    encode(line, buffer);
+                    drained++;
+                } catch (RuntimeException e) { // the record is skipped, the writer goes on
+                    buffer.position(start);
+                    formatErrors.incrementAndGet();
+                    logger.warn("Unable to format an access log record: " + e);
+                }
+                entries[slot].clear();
+                sequences.lazySet(slot, head + entries.length);
+                head++;
+            }
+            if (drained == 0) {
+                if (stopping) {
+                    close(channel);
+                    return;
+                }
+                LockSupport.parkNanos(flushIntervalNanos);
+                continue;
+            }
+            buffer.flip();
+            try {
+                if (channel == null || size + buffer.remaining() > maxFileSize) {
+                    channel = roll(channel);
+                    size = channel.size();
+                }
+                while (buffer.hasRemaining()) {
+                    size += channel.write(buffer);
+                }
+                written.addAndGet(drained);
+            } catch (IOException | RuntimeException e) {
+                writeErrors.incrementAndGet();
+                logger.warn("Unable to write the access log [" + file + "]: " + e);
+                channel = close(channel);
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+    }
+
+    /**
+     * Closes the current file, if any and full, shifting the previous ones, and opens the file to append to.
+     */
+    private FileChannel roll(FileChannel channel) throws IOException {
+        if (channel != null) {
+            close(channel);
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path previous = Paths.get(file + "." + i);
+                if (Files.exists(previous)) {
+                    Files.move(previous, Paths.get(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(Paths.get(file + "." + (maxFiles + 1)));
+            rolled.incrementAndGet();
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    }
+
+    private static FileChannel close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close the access log: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static void format(Entry entry, StringBuilder line) {
+        line.setLength(0);
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(entry.time))
+            .append("\",\"method\":\"").append(entry.method)
+            .append("\",\"path\":");
+        appendString(line, entry.path);
+        line.append(",\"upstream\":");
+        if (entry.upstream instanceof Record) {
+            Record record = (Record) entry.upstream;
+            appendString(line, record.getName() + "@" + EndpointRegistry.address(record));
+        } else {
+            appendString(line, entry.upstream == null ? null : entry.upstream.toString());
+        }
+        line.append(",\"status\":").append(entry.status)
+            .append(",\"bytes\":").append(entry.bytes)
+            .append(",\"latency-ms\":").append(entry.latencyNanos / 1e6);
+        if (entry.error != null) {
+            line.append(",\"error\":");
+            appendString(line, entry.error);
+        }
+        line.append("}\n");
+    }
+
+    private static void appendString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        int room = MAX_FIELD_BYTES;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            // UTF-8 length of the escaped character, a surrogate pair takes 4 bytes
+            room -= c == '"' || c == '\\' ? 2 : c < 0x20 ? 6 : c < 0x80 ? 1 :
+                c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+            if (room < 0) {
+                break;
+            }
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static void encode(StringBuilder line, ByteBuffer buffer) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) >= 0x80) { // rare, non-ASCII path or error
+                buffer.put(line.toString().getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        for (int i = 0; i < line.length(); i++) {
+            buffer.put((byte) line.charAt(i));
+        }
+    }
+
+    private static class Entry {
+        private long time;
+        private HttpMethod method;
+        private String path;
+        private Object upstream;
+        private int status;
+        private long bytes;
+        private long latencyNanos;
+        private String error;
+
+        void clear() {
+            path = null;
+            upstream = null;
+            error = null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free concurrency bulkhead: at most <i>max-in-flight</i> tasks run at once, up to <i>max-queued</i> further
+ * tasks wait for a permit and everything beyond is rejected. Every task which was run must call {@link #release()}.
+ */
+public class Bulkhead {
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Queue<QueuedTask> queue = new ConcurrentLinkedQueue<>();
+
+    public Bulkhead(JsonObject options) {
+        this.maxInFlight = options.getInteger("max-in-flight", 256);
+        this.maxQueued = options.getInteger("max-queued", 128);
+    }
+
+    /**
+     * Runs the task right away if a permit is available, otherwise queues it to be run later on the given context.
+     *
+     * @return false if the task was rejected because the bulkhead and its queue are full
+     */
+    public boolean submit(Context context, Handler<Void> task) {
+        if (tryAcquire()) {
+            task.handle(null);
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        queue.offer(new QueuedTask(context, task));
+        drain();
+        return true;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            QueuedTask queuedTask = queue.poll();
+            if (queuedTask == null) {
+                inFlight.decrementAndGet();
+            } else {
+                queued.decrementAndGet();
+                queuedTask.context.runOnContext(queuedTask.task);
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("in-flight", inFlight.get())
+            .put("queued", queued.get())
+            .put("rejected", rejected.get())
+            .put("max-in-flight", maxInFlight)
+            .put("max-queued", maxQueued);
+    }
+
+    private static class QueuedTask {
+        private final Context context;
+        private final Handler<Void> task;
+
+        QueuedTask(Context context, Handler<Void> task) {
+            this.context = context;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free adaptive concurrency limit (AIMD). Admitted requests report their latency: the limit grows by one
+ * while it is being used and the latency stays within <i>latency-tolerance</i> times the no-load latency, and is
+ * multiplied by <i>backoff-ratio</i> on failures and latency spikes. The no-load latency is the minimum latency
+ * of the last <i>min-latency-window</i> samples. The limit stays within <i>min-limit</i> and <i>max-limit</i>.
+ * Excess requests are rejected right away instead of queueing behind a saturated upstream.
+ */
+public class ConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int minLatencyWindow;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong minLatency = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong windowMinLatency = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicInteger windowSamples = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ConcurrencyLimiter(JsonObject options) {
+        this.minLimit = options.getInteger("min-limit", 8);
+        this.maxLimit = options.getInteger("max-limit", 1000);
+        this.backoffRatio = options.getDouble("backoff-ratio", 0.9);
+        this.latencyTolerance = options.getDouble("latency-tolerance", 2.0);
+        this.minLatencyWindow = options.getInteger("min-latency-window", 1000);
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(options.getInteger("initial-limit", 100)));
+    }
+
+    /**
+     * @return false if the limit is reached, otherwise the caller must report the outcome with
+     * {@link #onSuccess(long)}, {@link #onDropped()} or {@link #onIgnored()}
+     */
+    public boolean tryAcquire() {
+        int limit = getLimit();
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    public void onSuccess(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        long noLoadLatency = updateMinLatency(latencyNanos);
+        if (latencyNanos > latencyTolerance * noLoadLatency) {
+            decrease();
+        } else if (current * 2 >= getLimit()) { // only grow a limit which is actually used
+            update(1.0, 1.0);
+        }
+    }
+
+    /**
+     * The request failed or timed out, a sign of overload.
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        decrease();
+    }
+
+    /**
+     * The request did not reach the upstream (e.g. rejected further down), nothing was learnt.
+     */
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public JsonObject toJson() {
+        long noLoadLatency = minLatency.get();
+        return new JsonObject()
+            .put("limit", getLimit())
+            .put("in-flight", inFlight.get())
+            .put("rejected", rejected.get())
+            .put("min-latency-ms", noLoadLatency == Long.MAX_VALUE ? 0.0 : noLoadLatency / 1_000_000.0);
+    }
+
+    private void decrease() {
+        update(backoffRatio, 0.0);
+    }
+
+    private void update(double ratio, double increment) {
+        long current, next;
+        do {
+            current = limitBits.get();
+            double limit = Double.longBitsToDouble(current) * ratio + increment;
+            next = Double.doubleToRawLongBits(Math.max(minLimit, Math.min(maxLimit, limit)));
+        } while (next != current && !limitBits.compareAndSet(current, next));
+    }
+
+    private long updateMinLatency(long latencyNanos) {
+        windowMinLatency.accumulateAndGet(latencyNanos, Math::min);
+        if (windowSamples.incrementAndGet() >= minLatencyWindow) {
+            // start a new window, so the no-load latency follows lasting changes of the upstream
+            windowSamples.set(0);
+            minLatency.set(windowMinLatency.getAndSet(Long.MAX_VALUE));
+            return minLatency.get();
+        }
+        return minLatency.accumulateAndGet(latencyNanos, Math::min);
+    }
+}
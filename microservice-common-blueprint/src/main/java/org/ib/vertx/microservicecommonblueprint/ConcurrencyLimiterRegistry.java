@@ -0,0 +1,78 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.servicediscovery.Record;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * The adaptive {@link ConcurrencyLimiter}s of a JVM: a global one bounding all the upstream requests and one per
+ * service record. Settings come from the <i>concurrency-limit</i> config block, where the <i>global</i> and
+ * <i>endpoints</i> entries override the defaults. One registry is shared by all the verticle instances of a JVM.
+ */
+public class ConcurrencyLimiterRegistry implements Shareable {
+
+    private final JsonObject options;
+    private final ConcurrencyLimiter global;
+    private final Map<String, ConcurrencyLimiter> endpointLimiters = new ConcurrentHashMap<>();
+
+    private ConcurrencyLimiterRegistry(JsonObject options) {
+        this.options = options;
+        this.global = new ConcurrencyLimiter(overrides("global"));
+    }
+
+    /**
+     * @return the registry of this JVM, replaced by a new one when the options have changed
+     */
+    public static ConcurrencyLimiterRegistry getOrCreate(Vertx vertx, JsonObject options) {
+        LocalMap<String, ConcurrencyLimiterRegistry> shared =
+            vertx.sharedData().getLocalMap(ConcurrencyLimiterRegistry.class.getName());
+        ConcurrencyLimiterRegistry candidate = new ConcurrencyLimiterRegistry(options);
+        ConcurrencyLimiterRegistry existing = shared.putIfAbsent("registry", candidate);
+        while (existing != null && !existing.options.equals(options)) {
+            if (shared.replace("registry", existing, candidate)) {
+                return candidate;
+            }
+            existing = shared.putIfAbsent("registry", candidate);
+        }
+        return existing == null ? candidate : existing;
+    }
+
+    public ConcurrencyLimiter global() {
+        return global;
+    }
+
+    public ConcurrencyLimiter forEndpoint(Record record) {
+        return endpointLimiters.computeIfAbsent(record.getRegistration(),
+            registration -> new ConcurrencyLimiter(overrides("endpoints")));
+    }
+
+    /**
+     * @return the number of seconds advertised in the <i>Retry-After</i> header of the rejected requests
+     */
+    public int getRetryAfter() {
+        return options.getInteger("retry-after", 1);
+    }
+
+    public void evict(Predicate<String> registered) {
+        endpointLimiters.keySet().removeIf(registration -> !registered.test(registration));
+    }
+
+    public JsonObject toJson() {
+        JsonObject endpoints = new JsonObject();
+        endpointLimiters.forEach((registration, limiter) -> endpoints.put(registration, limiter.toJson()));
+        return new JsonObject().put("global", global.toJson()).put("endpoints", endpoints);
+    }
+
+    private JsonObject overrides(String section) {
+        JsonObject defaults = options.copy();
+        defaults.remove("global");
+        defaults.remove("endpoints");
+        return defaults.mergeIn(options.getJsonObject(section, new JsonObject()));
+    }
+}
@@ -0,0 +1,102 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A change of the configuration of the services, published by the {@link ConfigRetrieverHelper} to every verticle
+ * of the JVM on the {@link ConfigRetrieverHelper#CONFIG_CHANGED} event bus address. Changes are tracked per
+ * top-level key, i.e. per config block.
+ */
+public class ConfigChange {
+
+    private final JsonObject previousConfiguration;
+    private final JsonObject newConfiguration;
+    private final Set<String> changedKeys;
+
+    public ConfigChange(JsonObject previousConfiguration, JsonObject newConfiguration) {
+        this.previousConfiguration = previousConfiguration;
+        this.newConfiguration = newConfiguration;
+        Set<String> keys = new HashSet<>(previousConfiguration.fieldNames());
+        keys.addAll(newConfiguration.fieldNames());
+        keys.removeIf(key -> Objects.equals(previousConfiguration.getValue(key), newConfiguration.getValue(key)));
+        this.changedKeys = Collections.unmodifiableSet(keys);
+    }
+
+    public JsonObject getPreviousConfiguration() {
+        return previousConfiguration;
+    }
+
+    public JsonObject getNewConfiguration() {
+        return newConfiguration;
+    }
+
+    public Set<String> getChangedKeys() {
+        return changedKeys;
+    }
+
+    public boolean isChanged(String key) {
+        return changedKeys.contains(key);
+    }
+
+    /**
+     * @return a copy of the given configuration where the changed keys have their new value (or are removed)
+     */
+    public JsonObject applyTo(JsonObject config) {
+        JsonObject updated = config.copy();
+        changedKeys.forEach(key -> {
+            if (newConfiguration.containsKey(key)) {
+                updated.put(key, newConfiguration.getValue(key));
+            } else {
+                updated.remove(key);
+            }
+        });
+        return updated;
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("previous", previousConfiguration)
+            .put("new", newConfiguration);
+    }
+
+    /**
+     * Passes the changes as they are to the local consumers and as JSON over the wire.
+     */
+    public static class Codec implements MessageCodec<ConfigChange, ConfigChange> {
+
+        @Override
+        public void encodeToWire(Buffer buffer, ConfigChange change) {
+            Buffer json = change.toJson().toBuffer();
+            buffer.appendInt(json.length()).appendBuffer(json);
+        }
+
+        @Override
+        public ConfigChange decodeFromWire(int pos, Buffer buffer) {
+            int length = buffer.getInt(pos);
+            JsonObject json = new JsonObject(buffer.getBuffer(pos + 4, pos + 4 + length));
+            return new ConfigChange(json.getJsonObject("previous"), json.getJsonObject("new"));
+        }
+
+        @Override
+        public ConfigChange transform(ConfigChange change) {
+            return change;
+        }
+
+        @Override
+        public String name() {
+            return ConfigChange.class.getName();
+        }
+
+        @Override
+        public byte systemCodecID() {
+            return -1;
+        }
+    }
+}
@@ -16,11 +16,17 @@ public enum ConfigRetrieverHelper {
 
     public final static Logger logger = Logger.getLogger(ConfigRetrieverHelper.class);
 
+    /**
+     * Event bus address of the {@link ConfigChange}s, published to every verticle of the JVM.
+     */
+    public static final String CONFIG_CHANGED = ConfigRetrieverHelper.class.getName() + ".changed";
+
     private ConfigRetriever configRetriever;
     private ConfigRetrieverOptions options = new ConfigRetrieverOptions();
 
     public Observable<JsonObject> createConfig(final Vertx vertx) {
         configRetriever = ConfigRetriever.create(vertx, options);
+        vertx.eventBus().registerDefaultCodec(ConfigChange.class, new ConfigChange.Codec());
 
         Observable<JsonObject> configObservable = Observable.create(subscriber -> {
             configRetriever.getConfig(ar -> {
@@ -37,13 +43,19 @@ public enum ConfigRetrieverHelper {
             });
 
             configRetriever.listen(ar -> {
-                logger.info("Received configuration changes");
                 final JsonObject config =
                     vertx.getOrCreateContext().config().mergeIn(
                         Optional.ofNullable(ar.getNewConfiguration()).orElse(new JsonObject()));
                 logger.debug("Configuration " + config);
-                // TODO: Take into account these updates later on!
-                //subscriber.onNext(config);
+                if (ar.getPreviousConfiguration() == null || ar.getPreviousConfiguration().isEmpty()) {
+                    return; // initial load, already given to the subscriber
+                }
+                // the subscribers deploy the verticles, the running ones apply the changes themselves
+                ConfigChange change = new ConfigChange(
+                    Optional.ofNullable(ar.getPreviousConfiguration()).orElse(new JsonObject()),
+                    Optional.ofNullable(ar.getNewConfiguration()).orElse(new JsonObject()));
+                logger.info("Received configuration changes of " + change.getChangedKeys());
+                vertx.eventBus().publish(CONFIG_CHANGED, change);
             });
         });
 
@@ -55,6 +67,14 @@ public enum ConfigRetrieverHelper {
         return configObservable.filter(Objects::nonNull);
     }
 
+    /**
+     * @param scanPeriod the period, in ms, the stores are scanned for changes at
+     */
+    public ConfigRetrieverHelper withScanPeriod(final long scanPeriod) {
+        options.setScanPeriod(scanPeriod);
+        return this;
+    }
+
     public ConfigRetrieverHelper fromFileStore(final String path) {
         ConfigStoreOptions fileStore = new ConfigStoreOptions()
             .setType("file")
@@ -0,0 +1,115 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the Vert.x and deployment options of the services. The Vert.x options must be known before the Vert.x
+ * instance (and hence the {@link ConfigRetrieverHelper}) exists, so they are read directly from the configuration
+ * file and can be overridden by system properties with the same name.
+ */
+public final class DeploymentHelper {
+
+    private final static Logger logger = Logger.getLogger(DeploymentHelper.class);
+
+    public static final String NATIVE_TRANSPORT = "vertx.native-transport";
+    public static final String EVENT_LOOP_POOL_SIZE = "vertx.event-loop-pool-size";
+    public static final String CLUSTERED = "vertx.clustered";
+    public static final String CLUSTER_HOST = "vertx.cluster-host";
+    public static final String VERTICLE_INSTANCES = "verticle.instances";
+    public static final String CONFIG_SCAN_PERIOD = "config.scan-period";
+
+    private DeploymentHelper() {
+    }
+
+    public static VertxOptions createVertxOptions(String configPath) {
+        JsonObject config = readConfig(configPath);
+        VertxOptions options = new VertxOptions()
+            .setPreferNativeTransport(Boolean.parseBoolean(
+                System.getProperty(NATIVE_TRANSPORT, String.valueOf(config.getBoolean(NATIVE_TRANSPORT, false)))));
+        String eventLoopPoolSize = System.getProperty(EVENT_LOOP_POOL_SIZE);
+        if (eventLoopPoolSize != null) {
+            options.setEventLoopPoolSize(Integer.parseInt(eventLoopPoolSize));
+        } else if (config.getInteger(EVENT_LOOP_POOL_SIZE) != null) {
+            options.setEventLoopPoolSize(config.getInteger(EVENT_LOOP_POOL_SIZE));
+        }
+        if (Boolean.parseBoolean(System.getProperty(CLUSTERED, String.valueOf(config.getBoolean(CLUSTERED, false))))) {
+            options.setClustered(true)
+                .setClusterHost(System.getProperty(CLUSTER_HOST, config.getString(CLUSTER_HOST, "127.0.0.1")));
+        }
+        return options;
+    }
+
+    /**
+     * Creates the Vert.x instance, joining the cluster first if <i>vertx.clustered</i> is set (the cluster manager,
+     * Hazelcast, is configured by the <i>cluster.xml</i> of the classpath), and hands it to the handler.
+     */
+    public static void createVertx(VertxOptions options, Handler<Vertx> handler) {
+        if (!options.isClustered()) {
+            handler.handle(Vertx.vertx(options));
+            return;
+        }
+        Vertx.clusteredVertx(options, ar -> {
+            if (ar.succeeded()) {
+                logger.info("Joined the cluster on [" + options.getClusterHost() + "]");
+                handler.handle(ar.result());
+            } else {
+                logger.error("Unable to join the cluster", ar.cause());
+            }
+        });
+    }
+
+    /**
+     * @return the period, in ms, the configuration stores are scanned for changes at (5 seconds by default)
+     */
+    public static long getConfigScanPeriod(String configPath) {
+        String scanPeriod = System.getProperty(CONFIG_SCAN_PERIOD);
+        if (scanPeriod != null) {
+            return Long.parseLong(scanPeriod);
+        }
+        return readConfig(configPath).getLong(CONFIG_SCAN_PERIOD, 5000L);
+    }
+
+    /**
+     * @return the options deploying one verticle instance per core, unless <i>verticle.instances</i> is configured
+     */
+    public static DeploymentOptions createDeploymentOptions(JsonObject config) {
+        int instances = config.getInteger(VERTICLE_INSTANCES, Runtime.getRuntime().availableProcessors());
+        logger.info("Deploying " + instances + " verticle instance(s)");
+        return new DeploymentOptions()
+            .setConfig(config)
+            .setInstances(instances);
+    }
+
+    private static JsonObject readConfig(String path) {
+        File file = new File(path);
+        try (InputStream in = file.isFile() ?
+            new FileInputStream(file) : DeploymentHelper.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                return new JsonObject();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return new JsonObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException | DecodeException e) {
+            logger.warn("Unable to read Vert.x options from [" + path + "], using defaults: " + e.getMessage());
+            return new JsonObject();
+        }
+    }
+}
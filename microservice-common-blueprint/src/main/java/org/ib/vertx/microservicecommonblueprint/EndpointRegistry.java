@@ -0,0 +1,399 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.servicediscovery.Record;
+import io.vertx.servicediscovery.ServiceDiscovery;
+import io.vertx.servicediscovery.ServiceDiscoveryOptions;
+import io.vertx.servicediscovery.Status;
+import io.vertx.servicediscovery.types.EventBusService;
+import io.vertx.servicediscovery.types.HttpEndpoint;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * In-process view of the HTTP endpoints published in the service discovery, indexed by <i>api.name</i>, along with
+ * the event bus services reachable from this Vert.x instance (see {@link EventBusTransport}).
+ * The view is updated from discovery announcements and fully reloaded every <i>ttl</i> ms as a fallback
+ * (announcements are not propagated between JVMs), so lookups on the dispatch path never hit the backend.
+ * One registry is shared by all the verticle instances of a JVM, see {@link #acquire(Vertx, JsonObject, JsonObject)}.
+ * <p>
+ * Records carrying a lease (see {@link #LEASE_TTL}) are dropped once it was not renewed for <i>lease.ttl</i> ms, checked
+ * locally every <i>lease-check-interval</i> ms, and removed from the backend, so endpoints of crashed services
+ * disappear even though they were never unpublished. The lease is renewed with the wall clock of the publisher.
+ */
+public class EndpointRegistry implements Shareable {
+
+    private final static Logger logger = Logger.getLogger(EndpointRegistry.class);
+    private static final String API_NAME = "api.name";
+    // record metadata of the lease: renewal time (epoch ms) and duration (ms)
+    public static final String LEASE_RENEWED = "lease.renewed";
+    public static final String LEASE_TTL = "lease.ttl";
+
+    private final Vertx vertx;
+    private final JsonObject backendConfiguration;
+    private final long ttl;
+    private final long leaseCheckInterval;
+    private final long failurePenaltyNanos;
+    private final AtomicInteger references = new AtomicInteger();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready;
+    // cause of the failed initial load, until a refresh succeeds
+    private volatile Throwable failure;
+
+    // immutable snapshot, replaced as a whole on every change
+    private volatile Map<String, List<Record>> endpoints = Collections.emptyMap();
+    private volatile long lastRefresh;
+    // incremented whenever the endpoints change
+    private volatile long version;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    // latest lease renewal seen per registration, from the backend or from announcements
+    private final Map<String, Long> leases = new ConcurrentHashMap<>();
+    private final AtomicLong expired = new AtomicLong();
+    private final LatencyHistograms histograms;
+    private ServiceDiscovery discovery;
+    private MessageConsumer<JsonObject> announceConsumer;
+    private long refreshTimer = -1;
+    private long leaseTimer = -1;
+
+    private EndpointRegistry(Vertx vertx, JsonObject backendConfiguration, JsonObject options) {
+        this.vertx = vertx;
+        this.backendConfiguration = backendConfiguration;
+        this.ttl = options.getLong("ttl", 5000L);
+        this.leaseCheckInterval = options.getLong("lease-check-interval", 1000L);
+        this.failurePenaltyNanos = options.getLong("failure-penalty", 500L) * 1000000L;
+        this.histograms = new LatencyHistograms(options.getJsonObject("histograms", new JsonObject()));
+    }
+
+    /**
+     * @return the registry of this JVM, created and started by the first caller; every caller must {@link #release()} it
+     */
+    public static EndpointRegistry acquire(Vertx vertx, JsonObject backendConfiguration, JsonObject options) {
+        LocalMap<String, EndpointRegistry> registries = vertx.sharedData().getLocalMap(EndpointRegistry.class.getName());
+        EndpointRegistry candidate = new EndpointRegistry(vertx, backendConfiguration, options);
+        EndpointRegistry registry = registries.putIfAbsent("registry", candidate);
+        if (registry == null) {
+            registry = candidate;
+            registry.start();
+        }
+        registry.references.incrementAndGet();
+        return registry;
+    }
+
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            vertx.sharedData().getLocalMap(EndpointRegistry.class.getName()).remove("registry");
+            close();
+        }
+    }
+
+    private void start() {
+        discovery = ServiceDiscovery.create(vertx, new ServiceDiscoveryOptions()
+            .setBackendConfiguration(backendConfiguration));
+        announceConsumer = vertx.eventBus().consumer(
+            ServiceDiscoveryOptions.DEFAULT_ANNOUNCE_ADDRESS, message -> onAnnounce(new Record(message.body())));
+        refreshTimer = vertx.setPeriodic(ttl, id -> refresh());
+        leaseTimer = vertx.setPeriodic(leaseCheckInterval, id -> expireLeases());
+        refresh();
+    }
+
+    private void close() {
+        if (announceConsumer != null) {
+            announceConsumer.unregister();
+        }
+        if (refreshTimer != -1) {
+            vertx.cancelTimer(refreshTimer);
+        }
+        if (leaseTimer != -1) {
+            vertx.cancelTimer(leaseTimer);
+        }
+        if (discovery != null) {
+            discovery.close();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Runs the handler on the given context once the initial load of the registry is done. While the initial load
+     * fails, the handler fails right away; the registry keeps retrying every <i>ttl</i> ms. The handler also fails
+     * if the load takes longer than the timeout (e.g. the backend does not answer), it must be called on the context.
+     */
+    public void whenReady(Context context, long timeout, Handler<AsyncResult<Void>> handler) {
+        if (ready) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        if (failure != null) {
+            handler.handle(Future.failedFuture(failure));
+            return;
+        }
+        Waiter waiter = new Waiter(context, handler);
+        waiter.timer = vertx.setTimer(timeout, id -> {
+            waiters.remove(waiter);
+            waiter.complete(Future.failedFuture("Endpoint registry not loaded within " + timeout + " ms"));
+        });
+        waiters.add(waiter);
+        if (ready || failure != null) {
+            notifyWaiters();
+        }
+    }
+
+    private void notifyWaiters() {
+        AsyncResult<Void> result = ready ? Future.succeededFuture() : Future.failedFuture(failure);
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            Waiter notified = waiter;
+            notified.context.runOnContext(v -> {
+                vertx.cancelTimer(notified.timer);
+                notified.complete(result);
+            });
+        }
+    }
+
+    /**
+     * @return the HTTP endpoints and event bus services of the api, see {@link RouteTable.Route}
+     */
+    public List<Record> getEndpoints(String apiName) {
+        return endpoints.getOrDefault(apiName, Collections.emptyList());
+    }
+
+    public Set<String> getApiNames() {
+        return endpoints.keySet();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public EndpointStats getStats(Record record) {
+        EndpointStats endpointStats = stats.get(record.getRegistration());
+        if (endpointStats == null) { // only looked up once, the lambda captures the record
+            endpointStats = stats.computeIfAbsent(record.getRegistration(), registration -> new EndpointStats(
+                failurePenaltyNanos, histograms.forRoute(record.getMetadata().getString(API_NAME)),
+                histograms.forEndpoint(record)));
+        }
+        return endpointStats;
+    }
+
+    public LatencyHistograms getHistograms() {
+        return histograms;
+    }
+
+    public boolean isRegistered(String registration) {
+        return endpoints.values().stream()
+            .anyMatch(records -> records.stream().anyMatch(record -> registration.equals(record.getRegistration())));
+    }
+
+    public long getLastRefresh() {
+        return lastRefresh;
+    }
+
+    /**
+     * @return the number of records dropped because their lease expired
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    private void refresh() {
+        discovery.getRecords(this::isEndpoint, ar -> {
+            if (ar.succeeded()) {
+                long now = System.currentTimeMillis();
+                Map<String, List<Record>> snapshot = new HashMap<>();
+                ar.result().forEach(record -> {
+                    renewLease(record);
+                    if (isExpired(record, now)) {
+                        evict(record);
+                    } else {
+                        add(snapshot, record);
+                    }
+                });
+                // a record may be republished with the same registration but another weight, h2c or transport
+                if (!contents(snapshot).equals(contents(endpoints))) {
+                    endpoints = freeze(snapshot);
+                    version++;
+                }
+                lastRefresh = System.currentTimeMillis();
+                Set<String> registrations = ar.result().stream().map(Record::getRegistration).collect(Collectors.toSet());
+                stats.keySet().retainAll(registrations);
+                leases.keySet().retainAll(registrations);
+                histograms.retainEndpoints(registrations);
+                logger.debug("Endpoint registry refreshed with " + ar.result().size() + " records");
+                if (!ready) {
+                    ready = true;
+                    failure = null;
+                    notifyWaiters();
+                }
+            } else {
+                logger.warn("Unable to refresh endpoint registry, keeping last known endpoints: " + ar.cause().getMessage());
+                if (!ready) { // retried by the next refresh, lookups fail in the meantime
+                    failure = ar.cause();
+                    notifyWaiters();
+                }
+            }
+        });
+    }
+
+    private void onAnnounce(Record record) {
+        if (!isEndpoint(record) || record.getRegistration() == null) {
+            return;
+        }
+        renewLease(record);
+        if (record.getStatus() == Status.UP && isKnown(record)) {
+            return; // lease renewal of an endpoint already known as is
+        }
+        Map<String, List<Record>> snapshot = new HashMap<>();
+        endpoints.forEach((apiName, records) -> records.stream()
+            .filter(existing -> !record.getRegistration().equals(existing.getRegistration()))
+            .forEach(existing -> add(snapshot, existing)));
+        if (record.getStatus() == Status.UP) {
+            add(snapshot, record);
+        }
+        endpoints = freeze(snapshot);
+        version++;
+        logger.debug("Endpoint registry updated for [" + record.getName() + "] with status " + record.getStatus());
+    }
+
+    /**
+     * Drops the endpoints whose lease expired since the last refresh, without waiting for the next one.
+     */
+    private void expireLeases() {
+        long now = System.currentTimeMillis();
+        if (endpoints.values().stream().noneMatch(records -> records.stream().anyMatch(r -> isExpired(r, now)))) {
+            return;
+        }
+        Map<String, List<Record>> snapshot = new HashMap<>();
+        endpoints.forEach((apiName, records) -> records.forEach(record -> {
+            if (isExpired(record, now)) {
+                evict(record);
+            } else {
+                add(snapshot, record);
+            }
+        }));
+        endpoints = freeze(snapshot);
+        version++;
+    }
+
+    private void evict(Record record) {
+        expired.incrementAndGet();
+        leases.remove(record.getRegistration());
+        logger.warn("Lease of [" + record.getName() + "] at " + record.getLocation() + " expired, evicting it");
+        // every registry of the cluster may try, the first one wins
+        discovery.unpublish(record.getRegistration(), ar -> {
+            if (ar.failed()) {
+                logger.debug("Expired record [" + record.getRegistration() + "] already removed: " + ar.cause());
+            }
+        });
+    }
+
+    private boolean isEndpoint(Record record) {
+        return HttpEndpoint.TYPE.equals(record.getType())
+            || (EventBusService.TYPE.equals(record.getType()) && EventBusTransport.isReachable(vertx, record));
+    }
+
+    /**
+     * @return host:port of an HTTP endpoint, the address of an event bus service
+     */
+    public static String address(Record record) {
+        JsonObject location = record.getLocation();
+        return HttpEndpoint.TYPE.equals(record.getType()) ?
+            location.getString("host") + ":" + location.getInteger("port") : location.getString(Record.ENDPOINT);
+    }
+
+    private void renewLease(Record record) {
+        Long renewed = record.getMetadata().getLong(LEASE_RENEWED);
+        if (renewed != null) {
+            leases.merge(record.getRegistration(), renewed, Math::max);
+        }
+    }
+
+    private boolean isExpired(Record record, long now) {
+        Long leaseTtl = record.getMetadata().getLong(LEASE_TTL);
+        Long renewed = leases.get(record.getRegistration());
+        return leaseTtl != null && renewed != null && now - renewed > leaseTtl;
+    }
+
+    /**
+     * @return true if the registry holds the record with the same location and metadata, apart from its lease
+     */
+    private boolean isKnown(Record record) {
+        return endpoints.getOrDefault(record.getMetadata().getString(API_NAME), Collections.emptyList()).stream()
+            .anyMatch(existing -> record.getRegistration().equals(existing.getRegistration())
+                && record.getLocation().equals(existing.getLocation())
+                && withoutLease(record.getMetadata()).equals(withoutLease(existing.getMetadata())));
+    }
+
+    private static JsonObject withoutLease(JsonObject metadata) {
+        JsonObject copy = metadata.copy();
+        copy.remove(LEASE_RENEWED);
+        return copy;
+    }
+
+    private static void add(Map<String, List<Record>> snapshot, Record record) {
+        String apiName = record.getMetadata().getString(API_NAME);
+        if (apiName != null) {
+            snapshot.computeIfAbsent(apiName, key -> new ArrayList<>()).add(record);
+        }
+    }
+
+    /**
+     * @return the location and metadata (apart from the lease) of the records, by api name and registration
+     */
+    private static Map<String, Map<String, JsonObject>> contents(Map<String, List<Record>> snapshot) {
+        Map<String, Map<String, JsonObject>> contents = new HashMap<>();
+        snapshot.forEach((apiName, records) -> contents.put(apiName, records.stream().collect(Collectors.toMap(
+            Record::getRegistration, record -> new JsonObject()
+                .put("location", record.getLocation())
+                .put("metadata", withoutLease(record.getMetadata()))))));
+        return contents;
+    }
+
+    private static Map<String, List<Record>> freeze(Map<String, List<Record>> snapshot) {
+        snapshot.replaceAll((apiName, records) -> Collections.unmodifiableList(records));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * A lookup waiting for the initial load, completed once on its context, by the load or by its timeout.
+     */
+    private static class Waiter {
+        private final Context context;
+        private final Handler<AsyncResult<Void>> handler;
+        private long timer;
+        private boolean completed;
+
+        Waiter(Context context, Handler<AsyncResult<Void>> handler) {
+            this.context = context;
+            this.handler = handler;
+        }
+
+        void complete(AsyncResult<Void> result) {
+            if (!completed) {
+                completed = true;
+                handler.handle(result);
+            }
+        }
+    }
+}
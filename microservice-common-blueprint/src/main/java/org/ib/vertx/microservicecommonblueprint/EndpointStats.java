@@ -0,0 +1,106 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free, per-endpoint request statistics shared by the load balancers of all event loops. The latencies are also
+ * recorded in the histograms of the endpoint and of its route, when given. Failed requests count in the latency EWMA
+ * as at least the failure penalty, so an endpoint failing fast does not look like the fastest one.
+ */
+public class EndpointStats {
+
+    // weight of the last sample in the latency EWMA
+    private static final double ALPHA = 0.3;
+    private static final long DEFAULT_FAILURE_PENALTY_NANOS = 500_000_000L;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong latencyEwmaBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LatencyHistograms.StatusHistograms routeHistograms;
+    private final LatencyHistograms.StatusHistograms endpointHistograms;
+    private final long failurePenaltyNanos;
+
+    public EndpointStats() {
+        this(DEFAULT_FAILURE_PENALTY_NANOS, null, null);
+    }
+
+    public EndpointStats(long failurePenaltyNanos, LatencyHistograms.StatusHistograms routeHistograms,
+                         LatencyHistograms.StatusHistograms endpointHistograms) {
+        this.failurePenaltyNanos = failurePenaltyNanos;
+        this.routeHistograms = routeHistograms;
+        this.endpointHistograms = endpointHistograms;
+    }
+
+    public void onRequestStart() {
+        inFlight.incrementAndGet();
+        requests.incrementAndGet();
+    }
+
+    /**
+     * @param statusCode the status of the upstream response, 0 if there was none (e.g. connection failure)
+     */
+    public void onRequestEnd(long latencyNanos, int statusCode) {
+        inFlight.decrementAndGet();
+        if (routeHistograms != null) {
+            routeHistograms.record(latencyNanos, statusCode);
+            endpointHistograms.record(latencyNanos, statusCode);
+        }
+        long sample = latencyNanos;
+        if (statusCode == 0 || statusCode >= 500) {
+            failures.incrementAndGet();
+            consecutiveFailures.incrementAndGet();
+            sample = Math.max(latencyNanos, failurePenaltyNanos);
+        } else if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        long current, next;
+        do {
+            current = latencyEwmaBits.get();
+            double ewma = Double.longBitsToDouble(current);
+            next = Double.doubleToRawLongBits(ewma == 0.0 ? sample : ewma + ALPHA * (sample - ewma));
+        } while (!latencyEwmaBits.compareAndSet(current, next));
+    }
+
+    /**
+     * A request cancelled on purpose (e.g. a hedged attempt which lost the race, or
+     * the client of a streamed response went away), neither a failure nor a latency sample.
+     */
+    public void onRequestCancelled() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Forgets the latency and the consecutive failures, e.g. when an ejected endpoint is re-admitted, so it is judged
+     * on its next requests only.
+     */
+    public void resetHealth() {
+        latencyEwmaBits.set(Double.doubleToRawLongBits(0.0));
+        consecutiveFailures.set(0);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the exponentially weighted moving average of the latency in nanoseconds, 0 if nothing was measured yet
+     */
+    public double getLatencyEwma() {
+        return Double.longBitsToDouble(latencyEwmaBits.get());
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+}
@@ -0,0 +1,68 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.servicediscovery.Record;
+import io.vertx.servicediscovery.types.EventBusService;
+
+import java.util.UUID;
+
+/**
+ * Event bus transport between the services, an alternative to HTTP selected per route (<i>transport</i> block).
+ * A service publishes an {@link EventBusService} record per api at an address of its own Vert.x node, consumed by
+ * all its verticle instances; requests and replies are {@link RpcRequest}s and {@link RpcResponse}s. The address is
+ * reachable from the same Vert.x instance or, if both are clustered (<i>vertx.clustered</i>), from the other nodes
+ * of the cluster.
+ */
+public final class EventBusTransport {
+
+    public static final String HTTP = "http";
+    public static final String EVENT_BUS = "event-bus";
+    // record metadata: Vert.x node of the address and whether it is reachable from the cluster
+    public static final String NODE = "event-bus.node";
+    public static final String CLUSTERED = "event-bus.clustered";
+
+    private EventBusTransport() {
+    }
+
+    /**
+     * Registers the codecs of the messages, once per Vert.x instance.
+     */
+    public static void registerCodecs(Vertx vertx) {
+        LocalMap<String, Boolean> registered = vertx.sharedData().getLocalMap(EventBusTransport.class.getName());
+        if (registered.putIfAbsent("codecs", true) == null) {
+            vertx.eventBus()
+                .registerDefaultCodec(RpcRequest.class, new RpcRequest.Codec())
+                .registerDefaultCodec(RpcResponse.class, new RpcResponse.Codec());
+        }
+    }
+
+    /**
+     * @return the identifier of the Vert.x instance, generated by the first caller
+     */
+    public static String nodeId(Vertx vertx) {
+        LocalMap<String, String> nodes = vertx.sharedData().getLocalMap(EventBusTransport.class.getName() + ".node");
+        String id = nodes.get("id");
+        if (id == null) {
+            String candidate = UUID.randomUUID().toString();
+            id = nodes.putIfAbsent("id", candidate);
+            return id == null ? candidate : id;
+        }
+        return id;
+    }
+
+    /**
+     * @return the address of the api on this Vert.x node
+     */
+    public static String address(Vertx vertx, String apiName) {
+        return "rpc." + apiName + "." + nodeId(vertx);
+    }
+
+    /**
+     * @return true if the address of the record can be reached from this Vert.x instance
+     */
+    public static boolean isReachable(Vertx vertx, Record record) {
+        return nodeId(vertx).equals(record.getMetadata().getString(NODE))
+            || (vertx.isClustered() && record.getMetadata().getBoolean(CLUSTERED, false));
+    }
+}
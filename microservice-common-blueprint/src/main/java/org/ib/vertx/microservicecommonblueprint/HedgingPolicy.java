@@ -0,0 +1,89 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+
+/**
+ * Hedging and retry settings of an idempotent route, with the window of its recent latencies. A hedged request is
+ * sent to another endpoint when no response arrived within the <i>percentile</i> of the last <i>latency-window</i>
+ * latencies (at least <i>min-delay</i> ms), up to <i>max-hedges</i> times; failed requests are retried on another
+ * endpoint up to <i>max-retries</i> times. A policy is bound to the event loop of the verticle which created it.
+ */
+public class HedgingPolicy {
+
+    private final double percentile;
+    private final long minDelay;
+    private final int maxHedges;
+    private final int maxRetries;
+    private final long[] latencies;
+    private final long[] sorted;
+    private final int recomputeEvery;
+    private int count;
+    private int position;
+    private int sinceRecompute;
+    private long delay;
+    private long hedges;
+    private long hedgeWins;
+    private long retries;
+
+    public HedgingPolicy(JsonObject options) {
+        this.percentile = options.getDouble("percentile", 95.0);
+        this.minDelay = options.getLong("min-delay", 5L);
+        this.maxHedges = options.getInteger("max-hedges", 1);
+        this.maxRetries = options.getInteger("max-retries", 1);
+        this.latencies = new long[options.getInteger("latency-window", 1000)];
+        this.sorted = new long[latencies.length];
+        this.recomputeEvery = Math.max(1, latencies.length / 10);
+        this.delay = minDelay;
+    }
+
+    public void onLatency(long latencyNanos) {
+        latencies[position] = latencyNanos;
+        position = (position + 1) % latencies.length;
+        count = Math.min(count + 1, latencies.length);
+        // the percentile is only recomputed every few samples, sorting the window on every request costs too much
+        if (++sinceRecompute >= recomputeEvery) {
+            sinceRecompute = 0;
+            System.arraycopy(latencies, 0, sorted, 0, count);
+            Arrays.sort(sorted, 0, count);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            delay = Math.max(minDelay, sorted[Math.max(0, index)] / 1_000_000L);
+        }
+    }
+
+    /**
+     * @return the delay in ms after which a hedged request is sent
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+    public int getMaxHedges() {
+        return maxHedges;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void onHedge() {
+        hedges++;
+    }
+
+    public void onHedgeWin() {
+        hedgeWins++;
+    }
+
+    public void onRetry() {
+        retries++;
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("delay-ms", delay)
+            .put("hedges", hedges)
+            .put("hedge-wins", hedgeWins)
+            .put("retries", retries);
+    }
+}
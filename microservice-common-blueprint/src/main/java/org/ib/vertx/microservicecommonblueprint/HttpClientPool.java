@@ -0,0 +1,134 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.servicediscovery.Record;
+import org.apache.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Long-lived upstream {@link HttpClient}s, one per published endpoint, so keep-alive connections are reused
+ * across requests. A pool is bound to the event loop of the verticle which created it and must only be used
+ * from that event loop (i.e. one pool per verticle instance).
+ * <p>
+ * With <i>h2c</i> enabled, endpoints advertising cleartext HTTP/2 in their record (see {@link #H2C}) are called
+ * over HTTP/2: up to <i>http2-max-pool-size</i> connections per endpoint, each multiplexing concurrent streams up to
+ * the limit of the server. The other endpoints are called over HTTP/1.1.
+ */
+public class HttpClientPool {
+
+    private final static Logger logger = Logger.getLogger(HttpClientPool.class);
+
+    /** Record metadata of the endpoints accepting cleartext HTTP/2. */
+    public static final String H2C = "http.h2c";
+
+    private final Vertx vertx;
+    private final JsonObject options;
+    private final long idleEviction;
+    private final Map<String, PooledClient> clients = new HashMap<>();
+
+    public HttpClientPool(Vertx vertx, JsonObject options) {
+        this.vertx = vertx;
+        this.options = options;
+        this.idleEviction = options.getLong("idle-eviction", 60000L);
+    }
+
+    public HttpClient getClient(Record record) {
+        PooledClient pooled = clients.get(record.getRegistration());
+        if (pooled != null && !pooled.matches(record)) {
+            // republished with another location or protocol, the requests in flight get idle-eviction ms to complete
+            HttpClient previous = pooled.client;
+            vertx.setTimer(idleEviction, id -> previous.close());
+            pooled = null;
+        }
+        if (pooled == null) {
+            HttpClientOptions clientOptions = createOptions(record);
+            pooled = new PooledClient(vertx.createHttpClient(clientOptions), record);
+            clients.put(record.getRegistration(), pooled);
+            logger.info("Created pooled " + clientOptions.getProtocolVersion() + " client for [" + record.getName() +
+                "] at " + record.getLocation());
+        }
+        pooled.lastUsed = System.currentTimeMillis();
+        return pooled.client;
+    }
+
+    /**
+     * Closes the clients of endpoints which are no longer registered or were not used for <i>idle-eviction</i> ms.
+     */
+    public void evict(Predicate<String> registered) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, PooledClient>> iterator = clients.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PooledClient> entry = iterator.next();
+            if (!registered.test(entry.getKey()) || now - entry.getValue().lastUsed > idleEviction) {
+                logger.info("Evicting pooled HTTP client for registration [" + entry.getKey() + "]");
+                entry.getValue().client.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    public long getIdleEviction() {
+        return idleEviction;
+    }
+
+    public int size() {
+        return clients.size();
+    }
+
+    public void close() {
+        clients.values().forEach(pooled -> pooled.client.close());
+        clients.clear();
+    }
+
+    private HttpClientOptions createOptions(Record record) {
+        JsonObject location = record.getLocation();
+        boolean h2c = options.getBoolean("h2c", false) && record.getMetadata().getBoolean(H2C, false)
+            && !location.getBoolean("ssl", false);
+        return new HttpClientOptions()
+            .setDefaultHost(location.getString("host"))
+            .setDefaultPort(location.getInteger("port"))
+            .setSsl(location.getBoolean("ssl", false))
+            .setMaxPoolSize(options.getInteger("max-pool-size", 20))
+            .setMaxWaitQueueSize(options.getInteger("max-wait-queue-size", -1))
+            .setKeepAlive(options.getBoolean("keep-alive", true))
+            .setKeepAliveTimeout(options.getInteger("keep-alive-timeout", 60))
+            .setPipelining(options.getBoolean("pipelining", false))
+            .setPipeliningLimit(options.getInteger("pipelining-limit", 10))
+            .setIdleTimeout(options.getInteger("idle-timeout", 30))
+            .setConnectTimeout(options.getInteger("connect-timeout", 1000))
+            .setTcpNoDelay(options.getBoolean("tcp-no-delay", true))
+            .setTcpFastOpen(options.getBoolean("tcp-fast-open", false))
+            .setProtocolVersion(h2c ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1)
+            // prior knowledge by default, the record already told the server speaks HTTP/2
+            .setHttp2ClearTextUpgrade(options.getBoolean("h2c-upgrade", false))
+            .setHttp2MaxPoolSize(options.getInteger("http2-max-pool-size", 1))
+            .setHttp2MultiplexingLimit(options.getInteger("http2-multiplexing-limit", -1))
+            .setHttp2ConnectionWindowSize(options.getInteger("http2-connection-window-size", -1))
+            .setHttp2KeepAliveTimeout(options.getInteger("keep-alive-timeout", 60));
+    }
+
+    private static class PooledClient {
+        private final HttpClient client;
+        private final JsonObject location;
+        private final boolean h2c;
+        private long lastUsed;
+
+        PooledClient(HttpClient client, Record record) {
+            this.client = client;
+            this.location = record.getLocation();
+            this.h2c = record.getMetadata().getBoolean(H2C, false);
+        }
+
+        boolean matches(Record record) {
+            return h2c == record.getMetadata().getBoolean(H2C, false) && location.equals(record.getLocation());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.servicediscovery.Record;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDR latency histograms of the upstream requests, per route (<i>api.name</i>) and per upstream endpoint, each
+ * split by status class. Recording is wait-free and allocates nothing, the recorded intervals are only merged into
+ * the cumulative histograms when they are written in the Prometheus text format by
+ * {@link #writePrometheus(HttpServerResponse)}. The histograms cover latencies up to <i>highest-trackable-ms</i>
+ * with <i>significant-digits</i> precision.
+ */
+public class LatencyHistograms {
+
+    private static final String[] STATUS_CLASSES = {"error", "1xx", "2xx", "3xx", "4xx", "5xx"};
+    private static final double[] QUANTILES = {0.5, 0.75, 0.9, 0.99, 0.999};
+    private static final String ROUTE_METRIC = "upstream_route_request_duration_seconds";
+    private static final String ENDPOINT_METRIC = "upstream_endpoint_request_duration_seconds";
+
+    private final long highestTrackableMicros;
+    private final int significantDigits;
+    private final Map<String, StatusHistograms> routes = new ConcurrentHashMap<>();
+    private final Map<String, StatusHistograms> endpoints = new ConcurrentHashMap<>();
+
+    public LatencyHistograms(JsonObject options) {
+        this.highestTrackableMicros = options.getLong("highest-trackable-ms", 60000L) * 1000L;
+        this.significantDigits = options.getInteger("significant-digits", 3);
+    }
+
+    public StatusHistograms forRoute(String apiName) {
+        return routes.computeIfAbsent(String.valueOf(apiName),
+            key -> new StatusHistograms("route=\"" + escape(key) + "\""));
+    }
+
+    public StatusHistograms forEndpoint(Record record) {
+        return endpoints.computeIfAbsent(record.getRegistration(), registration -> new StatusHistograms(
+            "route=\"" + escape(String.valueOf(record.getMetadata().getString("api.name"))) + "\",endpoint=\"" +
+                escape(EndpointRegistry.address(record)) + "\""));
+    }
+
+    public void retainEndpoints(Set<String> registrations) {
+        endpoints.keySet().retainAll(registrations);
+    }
+
+    /**
+     * Writes the histograms as Prometheus summaries, one chunk per route or endpoint, and ends the response.
+     */
+    public void writePrometheus(HttpServerResponse response) {
+        response.setChunked(true)
+            .putHeader("content-type", "text/plain; version=0.0.4; charset=utf-8");
+        write(response, ROUTE_METRIC, "Latency of the upstream requests per route and status class", routes);
+        write(response, ENDPOINT_METRIC, "Latency of the upstream requests per endpoint and status class", endpoints);
+        response.end();
+    }
+
+    private static void write(HttpServerResponse response, String metric, String help,
+                              Map<String, StatusHistograms> series) {
+        response.write("# HELP " + metric + " " + help + "\n# TYPE " + metric + " summary\n");
+        series.values().forEach(histograms -> {
+            Buffer chunk = Buffer.buffer(1024);
+            histograms.write(chunk, metric);
+            if (chunk.length() > 0) {
+                response.write(chunk);
+            }
+        });
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public class StatusHistograms {
+        private final String labels;
+        private final Recorder[] recorders = new Recorder[STATUS_CLASSES.length];
+        private final LongAdder[] sums = new LongAdder[STATUS_CLASSES.length];
+        // only used while writing, under the lock of this instance
+        private final Histogram[] histograms = new Histogram[STATUS_CLASSES.length];
+        private final Histogram[] intervals = new Histogram[STATUS_CLASSES.length];
+
+        StatusHistograms(String labels) {
+            this.labels = labels;
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                recorders[i] = new Recorder(1, highestTrackableMicros, significantDigits);
+                sums[i] = new LongAdder();
+                histograms[i] = new Histogram(1, highestTrackableMicros, significantDigits);
+            }
+        }
+
+        /**
+         * @param statusCode the status of the upstream response, 0 if there was none
+         */
+        public void record(long latencyNanos, int statusCode) {
+            int statusClass = statusCode < 100 || statusCode > 599 ? 0 : statusCode / 100;
+            long micros = Math.max(1L, Math.min(highestTrackableMicros, latencyNanos / 1000L));
+            recorders[statusClass].recordValue(micros);
+            sums[statusClass].add(micros);
+        }
+
+        synchronized void write(Buffer chunk, String metric) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                intervals[i] = recorders[i].getIntervalHistogram(intervals[i]);
+                Histogram histogram = histograms[i];
+                histogram.add(intervals[i]);
+                long count = histogram.getTotalCount();
+                if (count == 0) {
+                    continue;
+                }
+                String seriesLabels = labels + ",status=\"" + STATUS_CLASSES[i] + "\"";
+                for (double quantile : QUANTILES) {
+                    chunk.appendString(metric).appendString("{").appendString(seriesLabels)
+                        .appendString(",quantile=\"").appendString(String.valueOf(quantile)).appendString("\"} ")
+                        .appendString(seconds(histogram.getValueAtPercentile(quantile * 100.0))).appendString("\n");
+                }
+                chunk.appendString(metric).appendString("_sum{").appendString(seriesLabels).appendString("} ")
+                    .appendString(seconds(sums[i].sum())).appendString("\n")
+                    .appendString(metric).appendString("_count{").appendString(seriesLabels).appendString("} ")
+                    .appendString(String.valueOf(count)).appendString("\n");
+            }
+        }
+
+        private String seconds(long micros) {
+            return String.valueOf(micros / 1_000_000.0);
+        }
+    }
+}
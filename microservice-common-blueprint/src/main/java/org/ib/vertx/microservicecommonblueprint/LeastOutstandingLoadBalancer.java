@@ -0,0 +1,36 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.servicediscovery.Record;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Selects the endpoint with the fewest in-flight requests, starting the scan at a random offset to break ties.
+ */
+public class LeastOutstandingLoadBalancer implements LoadBalancer {
+
+    private final Function<Record, EndpointStats> stats;
+
+    public LeastOutstandingLoadBalancer(Function<Record, EndpointStats> stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public Record select(List<Record> records) {
+        int size = records.size();
+        int offset = ThreadLocalRandom.current().nextInt(size);
+        Record selected = null;
+        int minInFlight = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Record record = records.get((offset + i) % size);
+            int inFlight = stats.apply(record).getInFlight();
+            if (inFlight < minInFlight) {
+                minInFlight = inFlight;
+                selected = record;
+            }
+        }
+        return selected;
+    }
+}
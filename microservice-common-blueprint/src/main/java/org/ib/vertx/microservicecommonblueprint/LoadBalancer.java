@@ -0,0 +1,43 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.servicediscovery.Record;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Picks the upstream endpoint a request is dispatched to.
+ */
+public interface LoadBalancer {
+
+    String ROUND_ROBIN = "round-robin";
+    String LEAST_OUTSTANDING = "least-outstanding";
+    String POWER_OF_TWO_CHOICES = "p2c";
+    String WEIGHTED = "weighted";
+    List<String> STRATEGIES = Arrays.asList(ROUND_ROBIN, LEAST_OUTSTANDING, POWER_OF_TWO_CHOICES, WEIGHTED);
+
+    /**
+     * @param records the candidate endpoints, never empty
+     * @return the selected endpoint
+     */
+    Record select(List<Record> records);
+
+    /**
+     * @param strategy one of the {@link #STRATEGIES}
+     */
+    static LoadBalancer create(String strategy, Function<Record, EndpointStats> stats) {
+        switch (strategy) {
+            case ROUND_ROBIN:
+                return new RoundRobinLoadBalancer();
+            case LEAST_OUTSTANDING:
+                return new LeastOutstandingLoadBalancer(stats);
+            case POWER_OF_TWO_CHOICES:
+                return new PowerOfTwoChoicesLoadBalancer(stats);
+            case WEIGHTED:
+                return new WeightedLoadBalancer();
+            default:
+                throw new IllegalArgumentException("Unknown load balancer strategy [" + strategy + "]");
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.servicediscovery.Record;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Passive health checking of the upstream endpoints, based on the outcome of the requests dispatched to them (see
+ * {@link EndpointStats}). An endpoint is ejected from the load balancing when it fails <i>consecutive-failures</i>
+ * requests in a row, when its error rate over an <i>interval</i> reaches <i>error-rate</i>, or when its latency EWMA
+ * exceeds <i>latency-ratio</i> times the median of its peers. An ejection lasts <i>base-ejection-time</i> ms, doubled
+ * on every further ejection up to <i>max-ejection-time</i>; the multiplier decays again while the endpoint stays
+ * healthy. At most <i>max-ejection-percent</i> of the endpoints of an api are ejected at once, and never all of them.
+ * Settings come from the <i>outlier-detection</i> config block. One detector is shared by all the verticle instances
+ * of a JVM, the analysis of an api runs on the dispatch path at most once per interval.
+ */
+public class OutlierDetector implements Shareable {
+
+    private final static Logger logger = Logger.getLogger(OutlierDetector.class);
+    private static final int MAX_EVENTS = 64;
+
+    private final JsonObject options;
+    private final long interval;
+    private final int consecutiveFailures;
+    private final double errorRate;
+    private final long errorRateMinRequests;
+    private final double latencyRatio;
+    private final double minLatencyNanos;
+    private final int latencyMinEndpoints;
+    private final long baseEjectionTime;
+    private final long maxEjectionTime;
+    private final int maxEjectionPercent;
+
+    private final Map<String, EndpointState> states = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> lastAnalysis = new ConcurrentHashMap<>();
+    // guarded by this
+    private final Map<String, Long> ejectionsByReason = new HashMap<>();
+    private long readmissions;
+    private final Deque<JsonObject> events = new ArrayDeque<>(MAX_EVENTS);
+
+    private OutlierDetector(JsonObject options) {
+        this.options = options;
+        this.interval = options.getLong("interval", 1000L);
+        this.consecutiveFailures = options.getInteger("consecutive-failures", 5);
+        this.errorRate = options.getDouble("error-rate", 0.5);
+        this.errorRateMinRequests = options.getLong("error-rate-min-requests", 20L);
+        this.latencyRatio = options.getDouble("latency-ratio", 3.0);
+        this.minLatencyNanos = options.getLong("min-latency", 10L) * 1e6;
+        this.latencyMinEndpoints = options.getInteger("latency-min-endpoints", 3);
+        this.baseEjectionTime = options.getLong("base-ejection-time", 5000L);
+        this.maxEjectionTime = options.getLong("max-ejection-time", 300000L);
+        this.maxEjectionPercent = options.getInteger("max-ejection-percent", 50);
+    }
+
+    /**
+     * @return the detector of this JVM, replaced by a new one when the options have changed
+     */
+    public static OutlierDetector getOrCreate(Vertx vertx, JsonObject options) {
+        LocalMap<String, OutlierDetector> shared = vertx.sharedData().getLocalMap(OutlierDetector.class.getName());
+        OutlierDetector candidate = new OutlierDetector(options);
+        OutlierDetector existing = shared.putIfAbsent("detector", candidate);
+        while (existing != null && !existing.options.equals(options)) {
+            if (shared.replace("detector", existing, candidate)) {
+                return candidate;
+            }
+            existing = shared.putIfAbsent("detector", candidate);
+        }
+        return existing == null ? candidate : existing;
+    }
+
+    /**
+     * @param records all the endpoints of the api
+     * @return the endpoints which are not ejected, the given list itself if none is
+     */
+    public List<Record> filter(String apiName, List<Record> records, Function<Record, EndpointStats> stats) {
+        long now = System.currentTimeMillis();
+        AtomicLong last = lastAnalysis.get(apiName);
+        if (last == null) {
+            last = lastAnalysis.computeIfAbsent(apiName, key -> new AtomicLong(now));
+        }
+        long previous = last.get();
+        if (now - previous >= interval && last.compareAndSet(previous, now)) {
+            analyze(records, stats, now);
+        }
+        List<Record> admitted = null;
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            EndpointState state = getState(record);
+            EndpointStats endpointStats = stats.apply(record);
+            long ejectedUntil = state.ejectedUntil;
+            boolean ejected = ejectedUntil != 0 && (now < ejectedUntil || !readmit(state, endpointStats, now));
+            // an ejection refused because of max-ejection-percent is only tried again after an interval
+            if (!ejected && endpointStats.getConsecutiveFailures() >= consecutiveFailures
+                && now >= state.cappedUntil) {
+                ejected = eject(records, state, "consecutive-failures", now);
+            }
+            if (ejected && admitted == null) {
+                admitted = new ArrayList<>(records.subList(0, i));
+            } else if (!ejected && admitted != null) {
+                admitted.add(record);
+            }
+        }
+        return admitted == null ? records : admitted;
+    }
+
+    /**
+     * Ejects the endpoints whose error rate over the last interval, or latency compared to their peers, is too high.
+     */
+    private synchronized void analyze(List<Record> records, Function<Record, EndpointStats> stats, long now) {
+        List<EndpointState> measured = new ArrayList<>(records.size());
+        List<Double> latencies = new ArrayList<>(records.size());
+        for (Record record : records) {
+            EndpointState state = getState(record);
+            EndpointStats endpointStats = stats.apply(record);
+            long requests = endpointStats.getRequests() - state.lastRequests;
+            long failures = endpointStats.getFailures() - state.lastFailures;
+            state.lastRequests = endpointStats.getRequests();
+            state.lastFailures = endpointStats.getFailures();
+            if (state.ejectedUntil != 0) {
+                continue;
+            }
+            if (requests >= errorRateMinRequests && failures >= errorRate * requests) {
+                eject(records, state, "error-rate", now);
+                continue;
+            }
+            if (state.multiplier > 0 && now - state.healthySince >= baseEjectionTime) {
+                state.multiplier--;
+                state.healthySince = now;
+            }
+            // only the latencies measured since the last re-admission are comparable
+            if (endpointStats.getRequests() - state.admittedRequests >= errorRateMinRequests
+                && endpointStats.getLatencyEwma() > 0) {
+                state.latency = endpointStats.getLatencyEwma();
+                measured.add(state);
+                latencies.add(state.latency);
+            }
+        }
+        if (latencies.size() < latencyMinEndpoints) {
+            return;
+        }
+        Collections.sort(latencies);
+        double median = latencies.get(latencies.size() / 2);
+        measured.stream()
+            .filter(state -> state.latency > minLatencyNanos && state.latency > latencyRatio * median)
+            .forEach(state -> eject(records, state, "latency", now));
+    }
+
+    /**
+     * @return true if the endpoint is (already) ejected, false if too many endpoints of the api are
+     */
+    private synchronized boolean eject(List<Record> records, EndpointState state, String reason, long now) {
+        if (state.ejectedUntil != 0) {
+            return true;
+        }
+        long ejected = records.stream().filter(record -> getState(record).ejectedUntil != 0).count();
+        int maxEjected = Math.min(records.size() - 1, Math.max(1, records.size() * maxEjectionPercent / 100));
+        if (ejected >= maxEjected) {
+            state.cappedUntil = now + interval;
+            return false;
+        }
+        state.multiplier++;
+        long duration = Math.min(baseEjectionTime << Math.min(state.multiplier - 1, 20), maxEjectionTime);
+        state.ejectedUntil = now + duration;
+        state.reason = reason;
+        ejectionsByReason.merge(reason, 1L, Long::sum);
+        logger.warn("Ejecting endpoint [" + state.endpoint + "] for " + duration + " ms, reason: " + reason);
+        addEvent(new JsonObject()
+            .put("time", now)
+            .put("event", "ejected")
+            .put("endpoint", state.endpoint)
+            .put("reason", reason)
+            .put("duration", duration));
+        return true;
+    }
+
+    /**
+     * @return true if the ejection of the endpoint is over
+     */
+    private synchronized boolean readmit(EndpointState state, EndpointStats endpointStats, long now) {
+        if (state.ejectedUntil == 0) {
+            return true;
+        }
+        if (now < state.ejectedUntil) {
+            return false;
+        }
+        state.ejectedUntil = 0;
+        state.healthySince = now;
+        state.admittedRequests = endpointStats.getRequests();
+        endpointStats.resetHealth();
+        readmissions++;
+        logger.info("Re-admitting endpoint [" + state.endpoint + "] ejected for " + state.reason);
+        addEvent(new JsonObject()
+            .put("time", now)
+            .put("event", "readmitted")
+            .put("endpoint", state.endpoint)
+            .put("reason", state.reason));
+        return true;
+    }
+
+    private void addEvent(JsonObject event) {
+        if (events.size() == MAX_EVENTS) {
+            events.removeFirst();
+        }
+        events.addLast(event);
+    }
+
+    private EndpointState getState(Record record) {
+        EndpointState state = states.get(record.getRegistration());
+        if (state == null) {
+            state = states.computeIfAbsent(record.getRegistration(), registration -> new EndpointState(
+                record.getName() + "@" + EndpointRegistry.address(record)));
+        }
+        return state;
+    }
+
+    public void evict(Predicate<String> registered) {
+        states.keySet().removeIf(registration -> !registered.test(registration));
+    }
+
+    public synchronized JsonObject toJson() {
+        long now = System.currentTimeMillis();
+        JsonObject ejected = new JsonObject();
+        states.forEach((registration, state) -> {
+            if (state.ejectedUntil != 0) {
+                ejected.put(registration, new JsonObject()
+                    .put("endpoint", state.endpoint)
+                    .put("reason", state.reason)
+                    .put("remaining", Math.max(0, state.ejectedUntil - now))
+                    .put("multiplier", state.multiplier));
+            }
+        });
+        JsonObject ejections = new JsonObject();
+        ejectionsByReason.forEach(ejections::put);
+        return new JsonObject()
+            .put("ejections", ejections)
+            .put("readmissions", readmissions)
+            .put("ejected", ejected)
+            .put("events", new JsonArray(new ArrayList<>(events)));
+    }
+
+    private static class EndpointState {
+        private final String endpoint;
+        // 0 when the endpoint is not ejected
+        private volatile long ejectedUntil;
+        // until when an ejection is not tried again, after one was refused because too many endpoints are ejected
+        private volatile long cappedUntil;
+        // guarded by the detector
+        private String reason;
+        private int multiplier;
+        private long healthySince;
+        private long admittedRequests;
+        private long lastRequests;
+        private long lastFailures;
+        private double latency;
+
+        EndpointState(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.servicediscovery.Record;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Samples two distinct endpoints at random and keeps the one with the lower expected cost,
+ * i.e. latency EWMA weighted by the number of in-flight requests.
+ */
+public class PowerOfTwoChoicesLoadBalancer implements LoadBalancer {
+
+    private final Function<Record, EndpointStats> stats;
+
+    public PowerOfTwoChoicesLoadBalancer(Function<Record, EndpointStats> stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public Record select(List<Record> records) {
+        int size = records.size();
+        if (size == 1) {
+            return records.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Record a = records.get(first);
+        Record b = records.get(second);
+        return cost(a) <= cost(b) ? a : b;
+    }
+
+    private double cost(Record record) {
+        EndpointStats endpointStats = stats.apply(record);
+        // unmeasured endpoints get a 1 ns latency so they are probed first
+        return Math.max(1.0, endpointStats.getLatencyEwma()) * (endpointStats.getInFlight() + 1);
+    }
+}
@@ -0,0 +1,163 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip/deflate compression of the responses (<i>compression</i> config block), negotiated with the
+ * <i>Accept-Encoding</i> of the client by the HTTP server. Only the responses whose content type is listed in
+ * <i>content-types</i> and whose body is at least <i>min-size</i> bytes (or of unknown size, i.e. chunked) are
+ * compressed, the others are sent as they are. Responses which already have a <i>Content-Encoding</i> (e.g. an
+ * upstream body forwarded by the gateway, or a pre-compressed payload) are passed through untouched.
+ */
+public class ResponseCompression {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    private static final CharSequence VARY = HttpHeaders.createOptimized("vary");
+
+    private final boolean enabled;
+    private final int level;
+    private final int minSize;
+    private final Set<String> contentTypes = new HashSet<>();
+
+    public ResponseCompression(JsonObject options) {
+        this.enabled = options.getBoolean("enabled", false);
+        this.level = options.getInteger("level", 6);
+        this.minSize = options.getInteger("min-size", 1024);
+        JsonArray types = options.getJsonArray("content-types",
+            new JsonArray().add("application/json").add("text/plain").add("text/html"));
+        for (int i = 0; i < types.size(); i++) {
+            contentTypes.add(types.getString(i).toLowerCase());
+        }
+    }
+
+    public HttpServerOptions apply(HttpServerOptions serverOptions) {
+        return serverOptions.setCompressionSupported(enabled).setCompressionLevel(level);
+    }
+
+    /**
+     * Router handler deciding, once the headers of the response are known, whether the server compresses it.
+     */
+    public void handle(RoutingContext context) {
+        HttpServerResponse response = context.response();
+        context.addHeadersEndHandler(v -> {
+            MultiMap headers = response.headers();
+            if (headers.contains(HttpHeaders.CONTENT_ENCODING)) {
+                return;
+            }
+            if (isCompressible(headers.get(HttpHeaders.CONTENT_TYPE))) {
+                headers.add(VARY, HttpHeaders.ACCEPT_ENCODING);
+                String contentLength = headers.get(HttpHeaders.CONTENT_LENGTH);
+                if (contentLength == null || Long.parseLong(contentLength) >= minSize) {
+                    return;
+                }
+            }
+            // an explicit content encoding keeps the server from compressing the response
+            headers.set(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+        });
+        context.next();
+    }
+
+    /**
+     * @return the encoding of a pre-compressed body of <i>size</i> bytes to send to the client, null to send the
+     * body as it is
+     */
+    public String negotiate(HttpServerRequest request, int size) {
+        return negotiate(request.headers(), size);
+    }
+
+    /**
+     * @see #negotiate(HttpServerRequest, int)
+     */
+    public String negotiate(MultiMap requestHeaders, int size) {
+        return enabled && size >= minSize ? negotiate(requestHeaders.get(HttpHeaders.ACCEPT_ENCODING)) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int separator = contentType.indexOf(';');
+        return contentTypes.contains((separator == -1 ? contentType : contentType.substring(0, separator))
+            .trim().toLowerCase());
+    }
+
+    /**
+     * @return gzip or deflate (in this order of preference) if accepted, null otherwise
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String coding : acceptEncoding.split(",")) {
+            int separator = coding.indexOf(';');
+            String name = (separator == -1 ? coding : coding.substring(0, separator)).trim();
+            if (separator != -1 && coding.substring(separator + 1).replace(" ", "").matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            if (GZIP.equalsIgnoreCase(name) || "*".equals(name)) {
+                return GZIP;
+            }
+            deflate |= DEFLATE.equalsIgnoreCase(name);
+        }
+        return deflate ? DEFLATE : null;
+    }
+
+    /**
+     * Reduces the <i>Accept-Encoding</i> of a request to the encoding negotiated, so that responses shared by several
+     * clients (cached or coalesced) can be keyed by the encoding the upstream will actually use.
+     *
+     * @return the encoding negotiated, an empty string for the identity
+     */
+    public static String normalize(MultiMap headers) {
+        String encoding = negotiate(headers.get(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding == null) {
+            headers.remove(HttpHeaders.ACCEPT_ENCODING);
+            return "";
+        }
+        headers.set(HttpHeaders.ACCEPT_ENCODING, encoding);
+        return encoding;
+    }
+
+    /**
+     * Compresses a static payload once, with the best compression, to be sent any number of times.
+     */
+    public static Buffer compress(Buffer body, String encoding) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length() / 2 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream out = GZIP.equals(encoding) ? new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        } : new DeflaterOutputStream(bytes, deflater)) {
+            out.write(body.getBytes());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to compress with " + encoding, e);
+        } finally {
+            deflater.end();
+        }
+        return Buffer.buffer(bytes.toByteArray());
+    }
+}
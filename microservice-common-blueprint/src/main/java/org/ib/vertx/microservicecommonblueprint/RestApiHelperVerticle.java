@@ -1,45 +1,135 @@
 package org.ib.vertx.microservicecommonblueprint;
 
-import io.vertx.circuitbreaker.CircuitBreaker;
-import io.vertx.circuitbreaker.CircuitBreakerOptions;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.Http2Settings;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.impl.ConcurrentHashSet;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.streams.Pump;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.servicediscovery.Record;
 import io.vertx.servicediscovery.ServiceDiscovery;
 import io.vertx.servicediscovery.ServiceDiscoveryOptions;
+import io.vertx.servicediscovery.types.EventBusService;
 import io.vertx.servicediscovery.types.HttpEndpoint;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 public class RestApiHelperVerticle {
 
     private final static Logger logger = Logger.getLogger(RestApiHelperVerticle.class);
+    // key of the span of a sampled request in its routing context
+    private static final String TRACE_SPAN = Span.class.getName();
+    // result of the circuit breaker futures of requests rejected before reaching an upstream endpoint
+    private static final Object REJECTED = new Object();
+    private static final String LIMITED = "concurrency_limit";
+    private static final String CANCELLED = "cancelled";
     private final Set<Record> registeredRecords;
+    private final Map<String, String> publishedRecords = new HashMap<>();
     private final AbstractVerticle verticle;
+    // updated by the configuration changes, unlike the config of the verticle
+    private JsonObject config;
+    private MessageConsumer<ConfigChange> configConsumer;
+    private MessageConsumer<RpcRequest> rpcConsumer;
+    // closes the client pools and guards replaced by a configuration change, once their requests have drained
+    private final List<Runnable> pendingCloses = new ArrayList<>();
     private ServiceDiscovery discovery;
-    private CircuitBreaker circuitBreaker;
+    private EndpointRegistry endpointRegistry;
+    private HttpClientPool clientPool;
+    private final Map<String, LoadBalancer> loadBalancers = new HashMap<>();
+    // validated load balancer strategies, the default one and the ones overridden by api name
+    private String loadBalancerStrategy;
+    private final Map<String, String> loadBalancerRoutes = new HashMap<>();
+    private final Map<String, Boolean> eventBusRoutes = new HashMap<>();
+    private DeliveryOptions deliveryOptions;
+    private long clientEvictionTimer;
+    private long leaseTimer;
+    private UpstreamGuardRegistry guards;
+    private ConcurrencyLimiterRegistry limiters;
+    private OutlierDetector outliers;
+    private JsonObject hedgingOptions;
+    // opted-in upstream paths by api name
+    private final Map<String, List<String>> hedgingRoutes = new HashMap<>();
+    private final Map<String, HedgingPolicy> hedgingPolicies = new HashMap<>();
+    private RetryBudget retryBudget;
+    private boolean streaming;
+    private RouteTable routeTable;
+    private final ResponseCompression compression;
+    private final AccessLog accessLog;
+    private final Tracer tracer;
 
     public RestApiHelperVerticle(AbstractVerticle verticle) {
         this.verticle = verticle;
+        this.config = verticle.config();
         registeredRecords = new ConcurrentHashSet<>();
+        JsonObject tracingOptions = config.getJsonObject("tracing") != null ?
+        config.getJsonObject("tracing") : new JsonObject();
+        tracer = Tracer.getOrCreate(verticle.getVertx(),
+            config.getString("service.name", verticle.getClass().getSimpleName()), tracingOptions);
+        compression = new ResponseCompression(config.getJsonObject("compression") != null ?
+            config.getJsonObject("compression") : new JsonObject());
+        JsonObject accessLogOptions = config.getJsonObject("access-log") != null ?
+        config.getJsonObject("access-log") : new JsonObject();
+        accessLog = accessLogOptions.getBoolean("enabled", false) ?
+            AccessLog.getOrCreate(verticle.getVertx(), accessLogOptions) : null;
+        EventBusTransport.registerCodecs(verticle.getVertx());
     }
 
+    /**
+     * Creates the HTTP server, accepting both HTTP/1.1 and cleartext HTTP/2 (h2c, at most
+     * <i>max-concurrent-streams</i> streams per connection); the clients only use h2c with the endpoints which
+     * advertise it, see <i>http-server.h2c</i>. Responses are compressed as configured in the <i>compression</i>
+     * block, see {@link ResponseCompression}, and logged in the access log if enabled, see {@link AccessLog}.
+     */
     public Future<Void> createHttpServer(Router router, String host, int port) {
         Future<HttpServer> httpServerFuture = Future.future();
-        verticle.getVertx().createHttpServer()
+        JsonObject options = httpServerOptions();
+        if (accessLog != null) {
+            router.route().order(-2).handler(this::logAccess);
+        }
+        if (compression.isEnabled()) {
+            router.route().order(-1).handler(compression::handle);
+        }
+        verticle.getVertx().createHttpServer(compression.apply(new HttpServerOptions())
+                    .setTcpNoDelay(options.getBoolean("tcp-no-delay", true))
+                    .setTcpFastOpen(options.getBoolean("tcp-fast-open", false))
+                    .setTcpQuickAck(options.getBoolean("tcp-quick-ack", false))
+                    .setReusePort(options.getBoolean("reuse-port", false))
+                    .setAcceptBacklog(options.getInteger("accept-backlog", -1))
+                    .setInitialSettings(new Http2Settings()
+                        .setMaxConcurrentStreams(options.getLong("max-concurrent-streams", 100L)))
+                    .setHttp2ConnectionWindowSize(options.getInteger("http2-connection-window-size", -1)))
                 .requestHandler(router::accept)
                 .listen(
                         port,
@@ -55,13 +145,51 @@ public class RestApiHelperVerticle {
         return httpServerFuture.map(r -> null);
     }
 
+    /**
+     * Publishes the endpoint with a lease of <i>lease.ttl</i> ms, renewed every <i>lease.renew-interval</i> ms until
+     * the verticle stops; consumers drop the endpoint if its lease expires (e.g. the service crashed).
+     */
     public Future<Void> publishHttpEndpoint(String name, String host, int port, String apiName) {
         Record record = HttpEndpoint.createRecord(name, host, port, "/",
-            new JsonObject().put("api.name", verticle.config().getString("api.name", apiName))
+            new JsonObject()
+                .put("api.name", config.getString("api.name", apiName))
+                .put(WeightedLoadBalancer.WEIGHT, config.getInteger("service.weight", 1))
+                .put(EndpointRegistry.LEASE_TTL, leaseOptions().getLong("ttl", 15000L))
+                .put(EndpointRegistry.LEASE_RENEWED, System.currentTimeMillis())
+                .put(HttpClientPool.H2C, httpServerOptions().getBoolean("h2c", false))
         );
         return publish(record);
     }
 
+    /**
+     * Serves the api over the event bus as well, if enabled in the <i>event-bus</i> block: the handler gets the
+     * {@link RpcRequest}s sent to the address of the api on this Vert.x node and replies with {@link RpcResponse}s.
+     * All the verticle instances of a JVM consume the same address, the event bus spreads the requests among them,
+     * and the address is published once as an {@link EventBusService} record, with a lease like the HTTP endpoint.
+     */
+    public Future<Void> publishEventBusService(String name, String apiName, Handler<Message<RpcRequest>> handler) {
+        JsonObject options = config.getJsonObject("event-bus") != null ?
+        config.getJsonObject("event-bus") : new JsonObject();
+        if (!options.getBoolean("enabled", false)) {
+            return Future.succeededFuture();
+        }
+        String api = config.getString("api.name", apiName);
+        String address = EventBusTransport.address(verticle.getVertx(), api);
+        Future<Void> registered = Future.future();
+        rpcConsumer = verticle.getVertx().eventBus().consumer(address, handler);
+        rpcConsumer.completionHandler(registered.completer());
+        Record record = EventBusService.createRecord(name, address, RpcRequest.class.getName(),
+            new JsonObject()
+                .put("api.name", api)
+                .put(WeightedLoadBalancer.WEIGHT, config.getInteger("service.weight", 1))
+                .put(EndpointRegistry.LEASE_TTL, leaseOptions().getLong("ttl", 15000L))
+                .put(EndpointRegistry.LEASE_RENEWED, System.currentTimeMillis())
+                .put(EventBusTransport.NODE, EventBusTransport.nodeId(verticle.getVertx()))
+                .put(EventBusTransport.CLUSTERED, verticle.getVertx().isClustered())
+        );
+        return registered.compose(v -> publish(record));
+    }
+
     private Future<Void> publish(Record record) {
         if (discovery == null) {
             try {
@@ -71,15 +199,24 @@ public class RestApiHelperVerticle {
             }
         }
 
+        // all the verticle instances of a JVM share the same HTTP server (and event bus address), publish it only once
+        String endpointKey = record.getName() + "@" + EndpointRegistry.address(record);
+        if (publishedEndpoints().putIfAbsent(endpointKey, verticle.deploymentID()) != null) {
+            logger.debug("Service [" + record.getName() + "] already published by another verticle instance");
+            return Future.succeededFuture();
+        }
+
         Future<Void> future = Future.future();
         // publish the service
         discovery.publish(record, ar -> {
             if (ar.succeeded()) {
                 registeredRecords.add(record);
+                publishedRecords.put(record.getRegistration(), endpointKey);
                 logger.info("Service [" + ar.result().getName() + "] successfully published");
                 future.complete();
             } else {
-                logger.warn("Service [" + ar.result() + "] could not be published");
+                publishedEndpoints().remove(endpointKey);
+                logger.warn("Service [" + record.getName() + "] could not be published");
                 future.fail(ar.cause());
             }
         });
@@ -88,33 +225,298 @@ public class RestApiHelperVerticle {
     }
 
     private void start() throws Exception {
+        JsonObject backendConfiguration = new JsonObject()
+            .put("host", "127.0.0.1")
+            .put("port", 8761) // Redis backend port
+            .put("key", "records");
+
         // init service discovery instance
         discovery = ServiceDiscovery.create(verticle.getVertx(), new ServiceDiscoveryOptions()
-            .setBackendConfiguration(
-                new JsonObject()
-                    .put("host", "127.0.0.1")
-                    .put("port", 8761) // Redis backend port
-                    .put("key", "records")
-            ));
-
-        // init circuit breaker instance
-        JsonObject options = verticle.config().getJsonObject("circuit-breaker") != null ?
-        verticle.config().getJsonObject("circuit-breaker") : new JsonObject();
-        circuitBreaker = CircuitBreaker.create(options.getString("name", "circuit-breaker"), verticle.getVertx(),
-            new CircuitBreakerOptions()
-                .setMaxFailures(options.getInteger("max-failures", 20))
-                .setTimeout(options.getLong("timeout", 500L))
-                .setFallbackOnFailure(true)
-                .setResetTimeout(options.getLong("reset-timeout", 2000L))
-        );
+            .setBackendConfiguration(backendConfiguration));
+
+        // init local endpoint registry (one per JVM), kept up to date from discovery announcements
+        JsonObject registryOptions = config.getJsonObject("endpoint-registry") != null ?
+        config.getJsonObject("endpoint-registry") : new JsonObject();
+        endpointRegistry = EndpointRegistry.acquire(verticle.getVertx(), backendConfiguration, registryOptions);
+
+        // init pooled upstream HTTP clients, bound to the event loop of this verticle
+        initClientPool();
+
+        // init circuit breakers and bulkheads, per api.name and per service record
+        initGuards();
+
+        // init the optional adaptive concurrency limits, global and per service record (one set per JVM)
+        initConcurrencyLimits();
+
+        // init the optional passive outlier detection of the upstream endpoints (one detector per JVM)
+        initOutlierDetection();
+
+        // init hedging and retries of the opted-in idempotent routes, within a retry budget
+        initHedging();
+
+        // init the load balancer strategies, per api.name
+        initLoadBalancing();
+
+        // init proxy mode, either buffering or streaming the upstream responses
+        JsonObject proxyOptions = config.getJsonObject("proxy") != null ?
+        config.getJsonObject("proxy") : new JsonObject();
+        streaming = proxyOptions.getBoolean("streaming", false);
+
+        // init the transport of the routes, HTTP unless the event bus is selected
+        initTransport();
+
+        // renew the leases of the records published by this verticle
+        leaseTimer = verticle.getVertx().setPeriodic(leaseOptions().getLong("renew-interval", 5000L),
+            id -> renewLeases());
+
+        // apply the configuration changes without restarting, see ConfigRetrieverHelper (never from other nodes)
+        configConsumer = verticle.getVertx().eventBus().localConsumer(ConfigRetrieverHelper.CONFIG_CHANGED,
+            message -> reconfigure(message.body()));
+    }
+
+    private void renewLeases() {
+        long now = System.currentTimeMillis();
+        registeredRecords.forEach(record -> {
+            record.getMetadata().put(EndpointRegistry.LEASE_RENEWED, now);
+            // the backend update also restores a record evicted while this service was unresponsive
+            discovery.update(record, ar -> {
+                if (ar.failed()) {
+                    logger.warn("Lease of service [" + record.getName() + "] could not be renewed: " +
+                        ar.cause().getMessage());
+                }
+            });
+        });
+    }
+
+    private JsonObject httpServerOptions() {
+        return config.getJsonObject("http-server") != null ? config.getJsonObject("http-server") : new JsonObject();
+    }
+
+    private JsonObject leaseOptions() {
+        return config.getJsonObject("lease") != null ? config.getJsonObject("lease") : new JsonObject();
+    }
+
+    private void initClientPool() {
+        JsonObject clientOptions = config.getJsonObject("http-client") != null ?
+        config.getJsonObject("http-client") : new JsonObject();
+        clientPool = new HttpClientPool(verticle.getVertx(), clientOptions);
+
+        clientEvictionTimer = verticle.getVertx().setPeriodic(Math.max(1000L, clientPool.getIdleEviction() / 2), id -> {
+            clientPool.evict(endpointRegistry::isRegistered);
+            guards.evict(endpointRegistry::isRegistered);
+            if (limiters != null) {
+                limiters.evict(endpointRegistry::isRegistered);
+            }
+            if (outliers != null) {
+                outliers.evict(endpointRegistry::isRegistered);
+            }
+        });
+    }
+
+    private void initGuards() {
+        JsonObject breakerOptions = config.getJsonObject("circuit-breaker") != null ?
+        config.getJsonObject("circuit-breaker") : new JsonObject();
+        JsonObject bulkheadOptions = config.getJsonObject("bulkhead") != null ?
+        config.getJsonObject("bulkhead") : new JsonObject();
+        guards = UpstreamGuardRegistry.acquire(verticle.getVertx(), breakerOptions, bulkheadOptions);
+    }
+
+    private void initConcurrencyLimits() {
+        JsonObject limitOptions = config.getJsonObject("concurrency-limit") != null ?
+        config.getJsonObject("concurrency-limit") : new JsonObject();
+        limiters = limitOptions.getBoolean("enabled", false) ?
+            ConcurrencyLimiterRegistry.getOrCreate(verticle.getVertx(), limitOptions) : null;
+    }
+
+    private void initOutlierDetection() {
+        JsonObject outlierOptions = config.getJsonObject("outlier-detection") != null ?
+        config.getJsonObject("outlier-detection") : new JsonObject();
+        outliers = outlierOptions.getBoolean("enabled", false) ?
+            OutlierDetector.getOrCreate(verticle.getVertx(), outlierOptions) : null;
+    }
+
+    private void initTransport() {
+        JsonObject transportOptions = transportOptions();
+        eventBusRoutes.clear();
+        deliveryOptions = new DeliveryOptions().setSendTimeout(transportOptions.getLong("send-timeout", 5000L));
+    }
+
+    private JsonObject transportOptions() {
+        return config.getJsonObject("transport") != null ? config.getJsonObject("transport") : new JsonObject();
+    }
+
+    private void initHedging() {
+        hedgingOptions = config.getJsonObject("hedging") != null ?
+        config.getJsonObject("hedging") : new JsonObject();
+        hedgingRoutes.clear();
+        hedgingPolicies.clear();
+        Object routes = hedgingOptions.getValue("routes");
+        if (routes instanceof JsonObject) {
+            ((JsonObject) routes).forEach(entry -> {
+                List<String> paths = hedgedPaths(entry.getValue());
+                if (paths != null) {
+                    hedgingRoutes.put(entry.getKey(), paths);
+                } else {
+                    logger.warn("Ignoring hedging.routes." + entry.getKey() + ", expecting an array of paths, e.g. "
+                        + "[\"/hats\"]");
+                }
+            });
+        } else if (routes != null) {
+            logger.warn("Ignoring hedging.routes, the hedged paths are listed by api, e.g. "
+                + "{\"hat-provider\": [\"/hats\"]}");
+        }
+        retryBudget = new RetryBudget(hedgingOptions.getJsonObject("retry-budget", new JsonObject()));
+    }
+
+    private void initLoadBalancing() {
+        JsonObject loadBalancerOptions = config.getJsonObject("load-balancer") != null ?
+        config.getJsonObject("load-balancer") : new JsonObject();
+        loadBalancers.clear();
+        loadBalancerRoutes.clear();
+        loadBalancerStrategy = validStrategy("load-balancer.strategy", loadBalancerOptions.getValue("strategy"));
+        Object routes = loadBalancerOptions.getValue("routes");
+        if (routes instanceof JsonObject) {
+            ((JsonObject) routes).forEach(entry -> loadBalancerRoutes.put(entry.getKey(),
+                validStrategy("load-balancer.routes." + entry.getKey(), entry.getValue())));
+        } else if (routes != null) {
+            logger.warn("Ignoring load-balancer.routes, the strategies are listed by api, e.g. "
+                + "{\"hat-provider\": \"" + LoadBalancer.LEAST_OUTSTANDING + "\"}");
+        }
+    }
+
+    /**
+     * @return the strategy, round-robin if it is missing or unknown
+     */
+    private static String validStrategy(String key, Object strategy) {
+        if (strategy != null && !LoadBalancer.STRATEGIES.contains(strategy)) {
+            logger.warn("Unknown load balancer strategy [" + strategy + "] in " + key + ", expecting one of "
+                + LoadBalancer.STRATEGIES + ", using [" + LoadBalancer.ROUND_ROBIN + "]");
+        }
+        return LoadBalancer.STRATEGIES.contains(strategy) ? (String) strategy : LoadBalancer.ROUND_ROBIN;
+    }
+
+    /**
+     * @return the paths of a <i>hedging.routes</i> entry, null if it is not an array of strings
+     */
+    private static List<String> hedgedPaths(Object value) {
+        if (!(value instanceof JsonArray)) {
+            return null;
+        }
+        List<String> paths = new ArrayList<>();
+        for (Object path : (JsonArray) value) {
+            if (!(path instanceof String)) {
+                return null;
+            }
+            paths.add((String) path);
+        }
+        return paths;
+    }
+
+    /**
+     * Applies a configuration change in place. The requests in flight complete with the client pool, circuit
+     * breakers and bulkheads they started with, which are closed <i>config.drain-timeout</i> ms later, while the
+     * next requests use the new ones. The settings shared by all the verticle instances of a JVM (endpoint registry,
+     * tracing) and the HTTP server options still require a restart.
+     */
+    private void reconfigure(ConfigChange change) {
+        config = change.applyTo(config);
+        long drainTimeout = config.getLong("config.drain-timeout", 30000L);
+        Set<String> applied = new TreeSet<>();
+        if (change.isChanged("config.drain-timeout")) {
+            applied.add("config.drain-timeout");
+        }
+        if (change.isChanged("http-client")) {
+            HttpClientPool previous = clientPool;
+            verticle.getVertx().cancelTimer(clientEvictionTimer);
+            initClientPool();
+            closeWhenDrained(previous::close, drainTimeout);
+            applied.add("http-client");
+        }
+        if (change.isChanged("circuit-breaker") || change.isChanged("bulkhead")) {
+            UpstreamGuardRegistry previous = guards;
+            initGuards();
+            closeWhenDrained(previous::release, drainTimeout);
+            if (change.isChanged("circuit-breaker")) {
+                applied.add("circuit-breaker");
+            }
+            if (change.isChanged("bulkhead")) {
+                applied.add("bulkhead");
+            }
+        }
+        if (change.isChanged("concurrency-limit")) {
+            initConcurrencyLimits();
+            applied.add("concurrency-limit");
+        }
+        if (change.isChanged("outlier-detection")) {
+            initOutlierDetection();
+            applied.add("outlier-detection");
+        }
+        if (change.isChanged("hedging")) {
+            initHedging();
+            applied.add("hedging");
+        }
+        if (change.isChanged("load-balancer")) {
+            initLoadBalancing();
+            applied.add("load-balancer");
+        }
+        if (change.isChanged("routes")) {
+            routeTable = null;
+            applied.add("routes");
+        }
+        if (change.isChanged("transport")) {
+            initTransport();
+            applied.add("transport");
+        }
+        if (change.isChanged("proxy")) {
+            JsonObject proxyOptions = config.getJsonObject("proxy") != null ?
+            config.getJsonObject("proxy") : new JsonObject();
+            streaming = proxyOptions.getBoolean("streaming", false);
+            applied.add("proxy");
+        }
+        if (!applied.isEmpty()) {
+            logger.info("Applied configuration changes of " + applied + " to verticle [" +
+                verticle.deploymentID() + "]");
+        }
+        // e.g. ports, instances, native transport, lease, tracing: read once at start
+        Set<String> ignored = new TreeSet<>(change.getChangedKeys());
+        ignored.removeAll(applied);
+        if (!ignored.isEmpty()) {
+            logger.warn("Configuration changes of " + ignored + " need a restart to be applied to verticle [" +
+                verticle.deploymentID() + "]");
+        }
+    }
+
+    private void closeWhenDrained(Runnable close, long drainTimeout) {
+        pendingCloses.add(close);
+        verticle.getVertx().setTimer(drainTimeout, id -> {
+            if (pendingCloses.remove(close)) {
+                close.run();
+            }
+        });
     }
 
     public void stop(Future<Void> future) {
         // In current design, the publisher is responsible for removing the service
+        endpointRegistry.release();
+        configConsumer.unregister();
+        if (rpcConsumer != null) {
+            rpcConsumer.unregister();
+        }
+        verticle.getVertx().cancelTimer(leaseTimer);
+        verticle.getVertx().cancelTimer(clientEvictionTimer);
+        clientPool.close();
+        guards.release();
+        if (accessLog != null) {
+            accessLog.release(verticle.getVertx());
+        }
+        pendingCloses.forEach(Runnable::run);
+        pendingCloses.clear();
+        @SuppressWarnings("rawtypes") // CompositeFuture#all takes a raw list
         List<Future> futures = new ArrayList<>();
         registeredRecords.forEach(record -> {
             Future<Void> cleanupFuture = Future.future();
             futures.add(cleanupFuture);
+            publishedEndpoints().remove(publishedRecords.get(record.getRegistration()));
             discovery.unpublish(record.getRegistration(), cleanupFuture.completer());
         });
 
@@ -135,84 +537,894 @@ public class RestApiHelperVerticle {
     }
 
     public void dispatchRequests(RoutingContext context, String uriPath) {
-        int initialOffset = 1; // length of `/`
-        // run with circuit breaker in order to deal with failure
-        circuitBreaker.execute(future -> {
-            getAllEndpoints().setHandler(ar -> {
+        dispatchRequests(context, uriPath, null);
+    }
+
+    /**
+     * Dispatches the request to the upstream endpoint of its route. If a response handler is given, the upstream
+     * response is buffered and handed to it instead of being written to the client, the handler is then
+     * responsible for ending the response (e.g. with {@link #respond(RoutingContext, UpstreamResponse)}).
+     * Upstream server errors and failures are still answered by the dispatcher.
+     */
+    public void dispatchRequests(RoutingContext context, String uriPath, Handler<UpstreamResponse> responseHandler) {
+        // hold the request body until the upstream request is ready to receive it
+        context.request().pause();
+        Context vertxContext = verticle.getVertx().getOrCreateContext();
+        if (!endpointRegistry.isReady()) { // only the very first requests wait for the initial load, if not too long
+            endpointRegistry.whenReady(vertxContext, guards.getTimeout(), ar -> {
                 if (ar.succeeded()) {
-                    List<Record> recordList = ar.result();
-                    // get relative uriPath and retrieve prefix to dispatch client
-                    String prefix = (uriPath.substring(initialOffset).split("/"))[0];
-                    // generate new relative uriPath
-                    String newPath = uriPath.substring(initialOffset + prefix.length());
-                    // get one relevant HTTP client, may not exist
-                    Optional<Record> client = recordList.stream()
-                        .filter(record -> record.getMetadata().getString("api.name") != null)
-                        .filter(record -> record.getMetadata().getString("api.name").equals(prefix))
-                        .findAny(); // simple load balance
-                    logger.debug("Creating request to uriPath=[" + uriPath + "] and prefix=[" + prefix + "] and newPath=[" + newPath + "]");
-                    if (client.isPresent()) {
-                        logger.debug("Dispatching request to [" + client.get().getLocation() + "] for uriPath=[" + newPath + "]");
-                        doDispatch(context, newPath, discovery.getReference(client.get()).get(), future);
+                    dispatchRequests(context, uriPath, responseHandler);
+                } else {
+                    context.request().resume();
+                    serviceUnavailable(context, "endpoint_registry_unavailable");
+                }
+            });
+            return;
+        }
+        Span span = context.get(TRACE_SPAN);
+        // retrieve the route of the uriPath and generate the new relative uriPath
+        Span lookupSpan = span == null ? null : span.child("route-lookup");
+        RouteTable.Route route = getRouteTable().match(uriPath);
+        if (lookupSpan != null) {
+            lookupSpan.tag("api", route == null ? null : route.getApiName()).finish();
+        }
+        if (route == null) {
+            logger.warn("Route for uriPath [" + uriPath + "] not found, unable to dispatch further the request");
+            context.request().resume();
+            notFound(context);
+            return;
+        }
+        if (!route.accepts(context.request().method())) {
+            context.request().resume();
+            methodNotAllowed(context);
+            return;
+        }
+        String prefix = route.getApiName();
+        String newPath = route.forwardPath(uriPath);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Creating request to uriPath=[" + uriPath + "] and api=[" + prefix + "] and newPath=[" + newPath + "]");
+        }
+        Span breakerSpan = span == null ? null : span.child("circuit-breaker").tag("api", prefix);
+        BiConsumer<Integer, String> rejectionHandler = (statusCode, cause) -> {
+                if (breakerSpan != null) {
+                    breakerSpan.tag("rejected", cause).finish();
+                }
+                context.request().resume();
+                if (statusCode == 404) {
+                    notFound(context);
+                } else if (LIMITED.equals(cause)) {
+                    context.response().putHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limiters.getRetryAfter()));
+                    serviceUnavailable(context, cause);
+                } else {
+                    serviceUnavailable(context, cause);
+                }
+            };
+        Handler<AsyncResult<Object>> resultHandler = ar -> {
+                if (breakerSpan != null) {
+                    breakerSpan.tag("error", ar.failed() ? ar.cause().getMessage() : null).finish();
+                }
+                if (ar.failed() && !context.response().headWritten()) {
+                    context.request().resume();
+                    badGateway(ar.cause(), context);
+                }
+            };
+        HedgingPolicy policy = getHedgingPolicy(prefix, newPath);
+        if (policy != null && isIdempotent(context.request().method()) && context.getBody() == null
+            && !hasBody(context.request())) {
+            // hedged and retried requests are buffered, they must be replayable
+            MultiMap headers = MultiMap.caseInsensitiveMultiMap().addAll(context.request().headers());
+            if (context.user() != null) {
+                headers.set("user-principal", context.user().principal().encode());
+            }
+            context.request().resume();
+            Future<UpstreamResponse> result = Future.future();
+            result.setHandler(ar -> {
+                if (ar.succeeded() && !context.response().headWritten()) {
+                    if (responseHandler != null) {
+                        responseHandler.handle(ar.result());
                     } else {
-                        logger.warn("Client for uriPath [" + uriPath + "] not found, unable to dispatch further the request");
-                        notFound(context);
-                        future.complete();
+                        respond(context, ar.result());
                     }
+                }
+            });
+            guardedCall(vertxContext, prefix, rejectionHandler, routeFuture -> hedgedCall(vertxContext, route,
+                context.request().method(), newPath, headers, policy, breakerSpan, rejectionHandler, result,
+                routeFuture), resultHandler);
+            return;
+        }
+        // streamed request bodies are only forwarded over HTTP
+        boolean buffered = context.getBody() != null || !hasBody(context.request());
+        guardedCall(vertxContext, prefix, rejectionHandler, routeFuture -> callEndpoint(vertxContext, prefix,
+            endpointsOf(route, buffered), null, (record, future) -> {
+                if (accessLog != null) {
+                    context.put(AccessLog.UPSTREAM, record);
+                }
+                if (EventBusService.TYPE.equals(record.getType())) {
+                    dispatchMessage(context, newPath, record, responseHandler, breakerSpan, future);
+                } else {
+                    doDispatch(context, newPath, clientPool.getClient(record), endpointRegistry.getStats(record),
+                        responseHandler, breakerSpan, future);
+                }
+            }, rejectionHandler, routeFuture), resultHandler);
+    }
+
+    /**
+     * Sends a buffered request to the upstream endpoint of its route, going through the same routing, load
+     * balancing, circuit breakers and bulkheads as {@link #dispatchRequests(RoutingContext, String)}, for requests
+     * which do not originate from a client request (e.g. fan-out of a batch). Upstream server errors, rejections
+     * and failures fail the result.
+     */
+    public void request(HttpMethod method, String uriPath, MultiMap headers, Buffer body,
+                        Handler<AsyncResult<UpstreamResponse>> resultHandler) {
+        Context vertxContext = verticle.getVertx().getOrCreateContext();
+        if (!endpointRegistry.isReady()) {
+            endpointRegistry.whenReady(vertxContext, guards.getTimeout(), ar -> {
+                if (ar.succeeded()) {
+                    request(method, uriPath, headers, body, resultHandler);
                 } else {
-                    future.fail(ar.cause());
+                    resultHandler.handle(Future.failedFuture("endpoint_registry_unavailable"));
                 }
             });
+            return;
+        }
+        RouteTable.Route route = getRouteTable().match(uriPath);
+        if (route == null || !route.accepts(method)) {
+            resultHandler.handle(Future.failedFuture(route == null ? "not_found" : "method_not_allowed"));
+            return;
+        }
+        String newPath = route.forwardPath(uriPath);
+        Span span = tracer.start(headers, method + " " + uriPath);
+        Future<UpstreamResponse> result = Future.future();
+        result.setHandler(span == null ? resultHandler : ar -> {
+            span.tag("api", route.getApiName()).tag("error", ar.failed() ? ar.cause().getMessage() : null).finish();
+            resultHandler.handle(ar);
+        });
+        BiConsumer<Integer, String> rejectionHandler = (statusCode, cause) -> result.tryFail(cause);
+        HedgingPolicy policy = getHedgingPolicy(route.getApiName(), newPath);
+        Handler<Future<Object>> routeCall = policy != null && isIdempotent(method) && body == null ?
+            routeFuture -> hedgedCall(vertxContext, route, method, newPath, headers, policy, span, rejectionHandler,
+                result, routeFuture) :
+            routeFuture -> callEndpoint(vertxContext, route.getApiName(), endpointsOf(route, true), null,
+                (record, future) -> send(record, method, newPath, headers, body, span, future, result),
+                rejectionHandler, routeFuture);
+        guardedCall(vertxContext, route.getApiName(), rejectionHandler, routeCall, ar -> {
+            if (ar.failed()) {
+                result.tryFail(ar.cause());
+            }
+        });
+    }
+
+    /**
+     * Runs the route call with the concurrency limit, circuit breaker and bulkhead of the route; the route call then
+     * goes through the guards of the selected endpoint(s), see {@link #callEndpoint}. Requests rejected without
+     * reaching an endpoint are given to the rejection handler with the status to answer; the result handler gets
+     * the outcome of the route circuit breaker. A route call outliving the timeout of the breaker is given up: its
+     * future fails, which releases its bulkhead permit, and its endpoint calls still queued are not sent.
+     */
+    private void guardedCall(Context vertxContext, String apiName, BiConsumer<Integer, String> rejectionHandler,
+                             Handler<Future<Object>> routeCall, Handler<AsyncResult<Object>> resultHandler) {
+        // the limits may be replaced by a configuration change while the request is in flight
+        ConcurrencyLimiter limiter = limiters == null ? null : limiters.global();
+        if (limiter != null && !limiter.tryAcquire()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Global concurrency limit reached, rejecting request");
+            }
+            rejectionHandler.accept(503, LIMITED);
+            return;
+        }
+        long start = System.nanoTime();
+        UpstreamGuard routeGuard = guards.forRoute(apiName);
+        Future<Object> routeFuture = Future.future();
+        // run with the circuit breaker of the route in order to deal with failure
+        routeGuard.getCircuitBreaker().execute(future -> {
+            boolean admitted = routeGuard.getBulkhead().submit(vertxContext, v -> {
+                if (future.isComplete()) { // timed out while queued
+                    routeGuard.getBulkhead().release();
+                    return;
+                }
+                routeFuture.setHandler(ar -> {
+                    routeGuard.getBulkhead().release();
+                    if (ar.succeeded()) {
+                        future.tryComplete(ar.result());
+                    } else {
+                        future.tryFail(ar.cause());
+                    }
+                });
+                routeCall.handle(routeFuture);
+            });
+            if (!admitted) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Bulkhead of api [" + apiName + "] is full, rejecting request");
+                }
+                rejectionHandler.accept(503, "bulkhead_full");
+                future.complete(REJECTED);
+            }
         }).setHandler(ar -> {
             if (ar.failed()) {
-                badGateway(ar.cause(), context);
+                routeFuture.tryFail(ar.cause());
             }
+            if (limiter != null) {
+                onLimitedCallEnd(limiter, start, ar);
+            }
+            resultHandler.handle(ar);
         });
     }
 
-    private void doDispatch(RoutingContext context, String path, HttpClient client, Future<Object> cbFuture) {
-        HttpClientRequest toReq = client
-            .request(context.request().method(), path, response -> {
-                response.bodyHandler(body -> {
-                    if (response.statusCode() >= 500) { // api endpoint server error, circuit breaker should fail
-                        cbFuture.fail(response.statusCode() + ": " + body.toString());
+    /**
+     * Runs the call on an endpoint of the api selected by its load balancer, skipping the ejected outliers and the
+     * excluded endpoints (if any), with the concurrency limit, bulkhead and circuit breaker of the endpoint. A call
+     * waiting in the bulkhead is dropped if the route future was completed meanwhile (given up or cancelled).
+     */
+    private void callEndpoint(Context vertxContext, String apiName, List<Record> recordList, List<Record> excluded,
+                              EndpointCall call, BiConsumer<Integer, String> rejectionHandler,
+                              Future<Object> routeFuture) {
+        if (outliers != null) {
+            recordList = outliers.filter(apiName, recordList, endpointRegistry::getStats);
+        }
+        if (excluded != null && !excluded.isEmpty()) {
+            recordList = recordList.stream().filter(record -> !excluded.contains(record)).collect(Collectors.toList());
+        }
+        if (recordList.isEmpty()) {
+            logger.warn("Client for api [" + apiName + "] not found, unable to dispatch further the request");
+            rejectionHandler.accept(404, "not_found");
+            routeFuture.complete(REJECTED);
+            return;
+        }
+        // skip the endpoints whose own circuit breaker is open
+        List<Record> candidates = recordList.stream().anyMatch(record -> guards.forEndpoint(record).isOpen()) ?
+            recordList.stream().filter(record -> !guards.forEndpoint(record).isOpen()).collect(Collectors.toList()) :
+            recordList;
+        if (candidates.isEmpty()) {
+            routeFuture.fail("All endpoints of api [" + apiName + "] have an open circuit");
+            return;
+        }
+        Record record = getLoadBalancer(apiName).select(candidates);
+        ConcurrencyLimiter limiter = limiters == null ? null : limiters.forEndpoint(record);
+        if (limiter != null && !limiter.tryAcquire()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Concurrency limit of endpoint [" + record.getLocation() + "] reached, rejecting request");
+            }
+            rejectionHandler.accept(503, LIMITED);
+            routeFuture.complete(REJECTED);
+            return;
+        }
+        long start = System.nanoTime();
+        UpstreamGuard endpointGuard = guards.forEndpoint(record);
+        boolean admitted = endpointGuard.getBulkhead().submit(vertxContext, v -> {
+            if (routeFuture.isComplete()) { // given up while queued
+                endpointGuard.getBulkhead().release();
+                if (limiter != null) {
+                    limiter.onIgnored();
+                }
+                return;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Dispatching request to [" + record.getLocation() + "] for api=[" + apiName + "]");
+            }
+            endpointGuard.getCircuitBreaker().execute(future -> call.call(record, future)
+            ).setHandler(ar -> {
+                endpointGuard.getBulkhead().release();
+                if (limiter != null) {
+                    onLimitedCallEnd(limiter, start, ar);
+                }
+                if (ar.succeeded()) {
+                    routeFuture.tryComplete();
+                } else {
+                    routeFuture.tryFail(ar.cause());
+                }
+            });
+        });
+        if (!admitted) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Bulkhead of endpoint [" + record.getLocation() + "] is full, rejecting request");
+            }
+            if (limiter != null) {
+                limiter.onIgnored();
+            }
+            rejectionHandler.accept(503, "bulkhead_full");
+            routeFuture.complete(REJECTED);
+        }
+    }
+
+    private static void onLimitedCallEnd(ConcurrencyLimiter limiter, long start, AsyncResult<Object> ar) {
+        if (ar.failed()) {
+            limiter.onDropped();
+        } else if (ar.result() == REJECTED) {
+            limiter.onIgnored();
+        } else {
+            limiter.onSuccess(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs a hedged request: the first attempt goes to an endpoint selected by the load balancer and, while no
+     * response arrived, a further attempt goes to another endpoint after the delay of the policy; failed attempts
+     * are retried on another endpoint. Extra attempts are only sent if the retry budget allows it. The first
+     * response wins, the attempts still in flight are then reset.
+     */
+    private void hedgedCall(Context vertxContext, RouteTable.Route route, HttpMethod method, String path,
+                            MultiMap headers, HedgingPolicy policy, Span parentSpan,
+                            BiConsumer<Integer, String> rejectionHandler, Future<UpstreamResponse> result,
+                            Future<Object> routeFuture) {
+        retryBudget.onRequest();
+        HedgedRequest hedged = new HedgedRequest(System.nanoTime(), parentSpan, endpointsOf(route, true));
+        sendAttempt(vertxContext, route, method, path, headers, policy, hedged, rejectionHandler, result, routeFuture);
+        scheduleHedge(vertxContext, route, method, path, headers, policy, hedged, result, routeFuture);
+    }
+
+    private void scheduleHedge(Context vertxContext, RouteTable.Route route, HttpMethod method, String path,
+                               MultiMap headers, HedgingPolicy policy, HedgedRequest hedged,
+                               Future<UpstreamResponse> result, Future<Object> routeFuture) {
+        if (hedged.hedges >= policy.getMaxHedges()) {
+            return;
+        }
+        hedged.timer = verticle.getVertx().setTimer(policy.getDelay(), id -> {
+            hedged.timer = -1;
+            if (hedged.done || routeFuture.isComplete() || hedged.tried.size() >= hedged.endpoints.size()
+                || !retryBudget.tryWithdraw()) {
+                return;
+            }
+            hedged.hedges++;
+            policy.onHedge();
+            sendAttempt(vertxContext, route, method, path, headers, policy, hedged, null, result, routeFuture)
+                .hedge = true;
+            scheduleHedge(vertxContext, route, method, path, headers, policy, hedged, result, routeFuture);
+        });
+    }
+
+    private Attempt sendAttempt(Context vertxContext, RouteTable.Route route, HttpMethod method, String path,
+                                MultiMap headers, HedgingPolicy policy, HedgedRequest hedged,
+                                BiConsumer<Integer, String> rejectionHandler, Future<UpstreamResponse> result,
+                                Future<Object> routeFuture) {
+        Attempt attempt = new Attempt();
+        hedged.attempts.add(attempt);
+        hedged.outstanding++;
+        Future<UpstreamResponse> attemptResult = Future.future();
+        attempt.result = attemptResult;
+        Future<Object> endpointFuture = Future.future();
+        attemptResult.setHandler(ar -> {
+            attempt.settled = true;
+            hedged.outstanding--;
+            if (isCancelled(attemptResult)) { // not sent if still waiting in the bulkhead of the endpoint
+                endpointFuture.tryComplete(REJECTED);
+            }
+            if (hedged.done) {
+                return;
+            }
+            if (ar.succeeded()) {
+                hedged.done = true;
+                if (hedged.timer != -1) {
+                    verticle.getVertx().cancelTimer(hedged.timer);
+                }
+                // the first response wins, cancel the other attempts
+                hedged.attempts.stream().filter(other -> !other.settled).forEach(other -> {
+                    other.result.tryFail(CANCELLED);
+                    if (other.request != null) { // event bus requests cannot be reset, their reply is ignored
+                        other.request.reset();
+                    }
+                });
+                if (attempt.hedge) {
+                    policy.onHedgeWin();
+                }
+                policy.onLatency(System.nanoTime() - hedged.start);
+                routeFuture.tryComplete();
+                result.tryComplete(ar.result());
+            } else if (hedged.rejected) { // the first attempt was rejected and already answered
+                hedged.done = true;
+                routeFuture.tryComplete(REJECTED);
+            } else if (hedged.outstanding == 0) {
+                if (hedged.retries < policy.getMaxRetries() && hedged.tried.size() < hedged.endpoints.size()
+                    && retryBudget.tryWithdraw()) {
+                    hedged.retries++;
+                    policy.onRetry();
+                    sendAttempt(vertxContext, route, method, path, headers, policy, hedged, null, result,
+                        routeFuture);
+                } else {
+                    hedged.done = true;
+                    if (hedged.timer != -1) {
+                        verticle.getVertx().cancelTimer(hedged.timer);
+                    }
+                    routeFuture.tryFail(ar.cause());
+                }
+            }
+        });
+        endpointFuture.setHandler(ar -> {
+            if (ar.failed()) {
+                attemptResult.tryFail(ar.cause());
+            } else if (ar.result() == REJECTED) {
+                attemptResult.tryFail("rejected");
+            }
+        });
+        // only the rejections of the first attempt are answered, later attempts just fail
+        BiConsumer<Integer, String> attemptRejectionHandler = rejectionHandler == null ? (statusCode, cause) -> { } :
+            (statusCode, cause) -> {
+                hedged.rejected = true;
+                rejectionHandler.accept(statusCode, cause);
+            };
+        callEndpoint(vertxContext, route.getApiName(), hedged.endpoints, hedged.tried,
+            (record, future) -> {
+                hedged.tried.add(record);
+                attempt.request = send(record, method, path, headers, null, hedged.span, future, attemptResult);
+            }, attemptRejectionHandler, endpointFuture);
+        return attempt;
+    }
+
+    /**
+     * Sends a buffered request to the endpoint over its transport.
+     *
+     * @return the HTTP request, null if sent over the event bus
+     */
+    private HttpClientRequest send(Record record, HttpMethod method, String path, MultiMap headers, Buffer body,
+                                   Span parentSpan, Future<Object> cbFuture, Future<UpstreamResponse> result) {
+        if (EventBusService.TYPE.equals(record.getType())) {
+            sendMessage(record, method, path, headers, body, endpointRegistry.getStats(record), parentSpan, cbFuture,
+                result);
+            return null;
+        }
+        return sendRequest(clientPool.getClient(record), method, path, headers, body,
+            endpointRegistry.getStats(record), parentSpan, cbFuture, result);
+    }
+
+    private void sendMessage(Record record, HttpMethod method, String path, MultiMap headers, Buffer body,
+                             EndpointStats stats, Span parentSpan, Future<Object> cbFuture,
+                             Future<UpstreamResponse> result) {
+        long start = System.nanoTime();
+        stats.onRequestStart();
+        Span responseSpan = parentSpan == null ? null : parentSpan.child("upstream-response").tag("path", path);
+        MultiMap requestHeaders = headers;
+        // the headers may be shared by several attempts, they are not modified
+        if (responseSpan != null || headers == null) {
+            requestHeaders = MultiMap.caseInsensitiveMultiMap();
+            if (headers != null) {
+                requestHeaders.addAll(headers);
+            }
+            if (responseSpan != null) {
+                requestHeaders.set(Tracer.TRACEPARENT, responseSpan.traceparent());
+            }
+        }
+        verticle.getVertx().eventBus().<RpcResponse>send(record.getLocation().getString(Record.ENDPOINT),
+            new RpcRequest(method, path, requestHeaders, body), deliveryOptions, ar -> {
+                if (ar.failed()) {
+                    boolean cancelled = isCancelled(result);
+                    if (cancelled) {
+                        stats.onRequestCancelled(); // lost the race against a hedge, not a failure of the endpoint
+                    } else {
+                        stats.onRequestEnd(System.nanoTime() - start, 0);
+                    }
+                    if (responseSpan != null) {
+                        responseSpan.tag("error", ar.cause().getMessage()).finish();
+                    }
+                    if (cancelled) { // neither a breaker failure nor a drop for the concurrency limit
+                        cbFuture.tryComplete(REJECTED);
                     } else {
-                        HttpServerResponse toRsp = context.response()
-                            .setStatusCode(response.statusCode());
-                        response.headers().forEach(header -> {
-                            toRsp.putHeader(header.getKey(), header.getValue());
-                        });
-                        toRsp.putHeader("content-type", "application/json; charset=utf-8");
+                        cbFuture.tryFail(ar.cause());
+                    }
+                    return;
+                }
+                RpcResponse response = ar.result().body();
+                stats.onRequestEnd(System.nanoTime() - start, response.getStatusCode());
+                if (responseSpan != null) {
+                    responseSpan.tag("status", response.getStatusCode()).finish();
+                }
+                if (response.getStatusCode() < 500) {
+                    cbFuture.tryComplete();
+                    result.tryComplete(new UpstreamResponse(response.getStatusCode(), response.getHeaders(),
+                        response.getBody()));
+                } else { // api endpoint server error, circuit breaker should fail
+                    cbFuture.tryFail(response.getStatusCode() + ": " + response.getBody().toString());
+                }
+            });
+    }
 
-                        //String bodyOutput = String.format("[%s][ResponseId-%d]-%s", Thread.currentThread().getName(), Thread.currentThread().getName(), ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE),, body.toString());
-                        //logger.debug("Received original body " + body.toString());
-                        //logger.debug("Transformed body " + Buffer.buffer(bodyOutput).toString());
+    private HttpClientRequest sendRequest(HttpClient client, HttpMethod method, String path, MultiMap headers,
+                                          Buffer body, EndpointStats stats, Span parentSpan, Future<Object> cbFuture,
+                                          Future<UpstreamResponse> result) {
+        long start = System.nanoTime();
+        stats.onRequestStart();
+        Span responseSpan = parentSpan == null ? null : parentSpan.child("upstream-response").tag("path", path);
+        HttpClientRequest toReq = client.request(method, path, response -> response.bodyHandler(responseBody -> {
+            boolean success = response.statusCode() < 500;
+            stats.onRequestEnd(System.nanoTime() - start, response.statusCode());
+            if (responseSpan != null) {
+                responseSpan.tag("status", response.statusCode()).finish();
+            }
+            if (success) {
+                cbFuture.tryComplete();
+                result.tryComplete(new UpstreamResponse(response.statusCode(), response.headers(), responseBody));
+            } else { // api endpoint server error, circuit breaker should fail
+                cbFuture.tryFail(response.statusCode() + ": " + responseBody.toString());
+            }
+        }));
+        toReq.exceptionHandler(ex -> {
+            boolean cancelled = isCancelled(result);
+            if (cancelled) {
+                stats.onRequestCancelled(); // reset on purpose, not a failure of the endpoint
+            } else {
+                stats.onRequestEnd(System.nanoTime() - start, 0);
+            }
+            if (responseSpan != null) {
+                responseSpan.tag("error", ex.getMessage()).finish();
+            }
+            if (cancelled) { // neither a breaker failure nor a drop for the concurrency limit
+                cbFuture.tryComplete(REJECTED);
+            } else {
+                cbFuture.tryFail(ex);
+            }
+        });
+        if (headers != null) {
+            toReq.headers().addAll(headers);
+        }
+        if (responseSpan != null) {
+            traceUpstreamRequest(toReq, parentSpan, responseSpan);
+        }
+        if (body != null) {
+            toReq.end(body);
+        } else {
+            toReq.end();
+        }
+        return toReq;
+    }
+
+    private void doDispatch(RoutingContext context, String path, HttpClient client, EndpointStats stats,
+                            Handler<UpstreamResponse> responseHandler, Span parentSpan, Future<Object> cbFuture) {
+        long start = System.nanoTime();
+        stats.onRequestStart();
+        HttpServerRequest fromReq = context.request();
+        Span responseSpan = parentSpan == null ? null : parentSpan.child("upstream-response").tag("path", path);
+        HttpClientRequest toReq = client
+            .request(fromReq.method(), path, response -> {
+                if (responseSpan != null) { // streamed bodies are not awaited, the span ends with the headers
+                    responseSpan.tag("status", response.statusCode()).finish();
+                }
+                if (response.statusCode() >= 500) { // api endpoint server error, circuit breaker should fail
+                    response.bodyHandler(body -> {
+                        stats.onRequestEnd(System.nanoTime() - start, response.statusCode());
+                        cbFuture.tryFail(response.statusCode() + ": " + body.toString());
+                    });
+                } else if (streaming && responseHandler == null) {
+                    streamResponse(context, response, stats, start, cbFuture);
+                } else {
+                    response.bodyHandler(body -> {
+                        stats.onRequestEnd(System.nanoTime() - start, response.statusCode());
+                        if (cbFuture.isComplete()) { // circuit breaker timed out, a response was already sent
+                            return;
+                        }
+                        if (responseHandler != null) {
+                            cbFuture.complete();
+                            responseHandler.handle(new UpstreamResponse(response.statusCode(), response.headers(), body));
+                            return;
+                        }
+                        HttpServerResponse toRsp = copyResponseHeaders(response.statusCode(), response.headers(),
+                            context.response());
 
                         toRsp.end(body);
                         cbFuture.complete();
-                    }
-                    ServiceDiscovery.releaseServiceObject(discovery, client);
-                });
+                    });
+                }
             });
-        // set headers
-        context.request().headers().forEach(header -> {
-            toReq.putHeader(header.getKey(), header.getValue());
+        toReq.exceptionHandler(ex -> {
+            stats.onRequestEnd(System.nanoTime() - start, 0);
+            if (responseSpan != null) {
+                responseSpan.tag("error", ex.getMessage()).finish();
+            }
+            cbFuture.tryFail(ex);
+        });
+        // set headers, but the hop-by-hop ones (not allowed over HTTP/2)
+        fromReq.headers().forEach(header -> {
+            if (!isHopByHop(header.getKey())) {
+                toReq.headers().add(header.getKey(), header.getValue());
+            }
         });
         if (context.user() != null) {
             toReq.putHeader("user-principal", context.user().principal().encode());
         }
-        // send request
-        if (context.getBody() == null) {
+        if (responseSpan != null) {
+            traceUpstreamRequest(toReq, parentSpan, responseSpan);
+        }
+        // send request, streaming the body (if any) chunk by chunk
+        if (context.getBody() != null) {
+            toReq.end(context.getBody());
+        } else if (fromReq.isEnded() || !hasBody(fromReq)) {
             toReq.end();
+            fromReq.resume();
         } else {
-            toReq.end(context.getBody());
+            if (!toReq.headers().contains(HttpHeaders.CONTENT_LENGTH)) {
+                toReq.setChunked(true);
+            }
+            fromReq.endHandler(v -> toReq.end());
+            Pump.pump(fromReq, toReq).start();
+            fromReq.resume();
         }
     }
 
-    private Future<List<Record>> getAllEndpoints() {
-        Future<List<Record>> future = Future.future();
-        discovery.getRecords(record -> record.getType().equals(HttpEndpoint.TYPE), future.completer());
-        return future;
+    /**
+     * Dispatches a buffered request (or one without a body) to an event bus service.
+     */
+    private void dispatchMessage(RoutingContext context, String path, Record record,
+                                 Handler<UpstreamResponse> responseHandler, Span parentSpan, Future<Object> cbFuture) {
+        HttpServerRequest fromReq = context.request();
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        fromReq.headers().forEach(header -> {
+            if (!isHopByHop(header.getKey())) {
+                headers.add(header.getKey(), header.getValue());
+            }
+        });
+        if (context.user() != null) {
+            headers.set("user-principal", context.user().principal().encode());
+        }
+        Future<UpstreamResponse> result = Future.future();
+        result.setHandler(ar -> {
+            // failures are answered with the outcome of the circuit breaker
+            if (ar.succeeded() && !context.response().headWritten()) {
+                if (responseHandler != null) {
+                    responseHandler.handle(ar.result());
+                } else {
+                    respond(context, ar.result());
+                }
+            }
+        });
+        fromReq.resume();
+        sendMessage(record, fromReq.method(), path, headers, context.getBody(), endpointRegistry.getStats(record),
+            parentSpan, cbFuture, result);
+    }
+
+    /**
+     * Propagates the trace to the upstream request and times the acquisition of its connection.
+     */
+    private static void traceUpstreamRequest(HttpClientRequest toReq, Span parentSpan, Span responseSpan) {
+        toReq.headers().set(Tracer.TRACEPARENT, responseSpan.traceparent());
+        Span connectSpan = parentSpan.child("upstream-connect");
+        toReq.connectionHandler(connection -> connectSpan.tag("remote", String.valueOf(connection.remoteAddress()))
+            .finish());
+    }
+
+    private void streamResponse(RoutingContext context, HttpClientResponse response, EndpointStats stats, long start,
+                                Future<Object> cbFuture) {
+        if (cbFuture.isComplete()) { // circuit breaker timed out, a response was already sent
+            response.request().reset();
+            stats.onRequestEnd(System.nanoTime() - start, 0);
+            return;
+        }
+        HttpServerResponse toRsp = copyResponseHeaders(response.statusCode(), response.headers(), context.response());
+        if (!toRsp.headers().contains(HttpHeaders.CONTENT_LENGTH)) {
+            toRsp.setChunked(true);
+        }
+        Pump pump = Pump.pump(response, toRsp);
+        // settled once, by the end of the upstream response, its failure or the client going away
+        AtomicBoolean settled = new AtomicBoolean();
+        response.endHandler(v -> {
+            if (settled.compareAndSet(false, true)) {
+                stats.onRequestEnd(System.nanoTime() - start, response.statusCode());
+                toRsp.end();
+            }
+        });
+        response.exceptionHandler(ex -> {
+            if (settled.compareAndSet(false, true)) {
+                stats.onRequestEnd(System.nanoTime() - start, 0);
+                logger.warn("Upstream response failed while streaming: " + ex.getMessage());
+                toRsp.close();
+            }
+        });
+        // the client went away, stop reading the upstream response instead of draining it for nobody
+        Handler<Void> clientClosed = v -> {
+            if (settled.compareAndSet(false, true)) {
+                pump.stop();
+                stats.onRequestCancelled();
+                response.request().reset();
+            }
+        };
+        toRsp.closeHandler(clientClosed);
+        toRsp.exceptionHandler(ex -> clientClosed.handle(null));
+        pump.start();
+        // the status is known and streaming has started, the circuit breaker is no longer involved
+        cbFuture.complete();
+    }
+
+    /**
+     * Writes a buffered upstream response to the client.
+     */
+    public void respond(RoutingContext context, UpstreamResponse response) {
+        copyResponseHeaders(response.getStatusCode(), response.getHeaders(), context.response())
+            .end(response.getBody());
+    }
+
+    private HttpServerResponse copyResponseHeaders(int statusCode, MultiMap headers, HttpServerResponse toRsp) {
+        toRsp.setStatusCode(statusCode);
+        headers.forEach(header -> {
+            // hop-by-hop headers are set by this connection itself
+            if (!isHopByHop(header.getKey())) {
+                toRsp.headers().add(header.getKey(), header.getValue());
+            }
+        });
+        if (!toRsp.headers().contains(HttpHeaders.CONTENT_TYPE)) {
+            toRsp.putHeader(HttpHeaders.CONTENT_TYPE, "application/json; charset=utf-8");
+        }
+        return toRsp;
+    }
+
+    private static boolean isHopByHop(String header) {
+        return HttpHeaders.TRANSFER_ENCODING.toString().equalsIgnoreCase(header)
+            || HttpHeaders.CONNECTION.toString().equalsIgnoreCase(header)
+            || HttpHeaders.KEEP_ALIVE.toString().equalsIgnoreCase(header)
+            || HttpHeaders.UPGRADE.toString().equalsIgnoreCase(header)
+            || "proxy-connection".equalsIgnoreCase(header);
+    }
+
+    /**
+     * @return true if the attempt was cancelled on purpose, having lost the race against another one
+     */
+    private static boolean isCancelled(Future<UpstreamResponse> result) {
+        return result.failed() && CANCELLED.equals(result.cause().getMessage());
+    }
+
+    /**
+     * A safe method is required for hedging, not sufficient: only the opted-in paths are known not to have effects.
+     */
+    private static boolean isIdempotent(HttpMethod method) {
+        return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS;
+    }
+
+    /**
+     * @return true if the request may have a body: HTTP/2 requests need neither a content-length nor a
+     * transfer-encoding, only the end of their stream tells
+     */
+    private static boolean hasBody(HttpServerRequest request) {
+        if (request.version() == HttpVersion.HTTP_2) {
+            return !request.isEnded();
+        }
+        return request.headers().contains(HttpHeaders.CONTENT_LENGTH)
+            || request.headers().contains(HttpHeaders.TRANSFER_ENCODING);
+    }
+
+    public ResponseCompression getCompression() {
+        return compression;
+    }
+
+    public JsonObject getUpstreamMetrics() {
+        JsonObject metrics = guards == null ? new JsonObject() : guards.toJson();
+        if (endpointRegistry != null) {
+            metrics.put("expired-leases", endpointRegistry.getExpired());
+        }
+        if (limiters != null) {
+            metrics.put("concurrency-limits", limiters.toJson());
+        }
+        if (outliers != null) {
+            metrics.put("outlier-detection", outliers.toJson());
+        }
+        if (accessLog != null) {
+            metrics.put("access-log", accessLog.toJson());
+        }
+        if (!hedgingPolicies.isEmpty()) {
+            JsonObject hedging = new JsonObject();
+            hedgingPolicies.forEach((apiName, policy) -> hedging.put(apiName, policy.toJson()));
+            metrics.put("hedging", hedging).put("retry-budget", retryBudget.toJson());
+        }
+        return metrics;
+    }
+
+    /**
+     * Logs the request once its response is written, see {@link AccessLog}.
+     */
+    private void logAccess(RoutingContext context) {
+        long start = System.nanoTime();
+        context.addBodyEndHandler(v -> accessLog.log(context.request().method(), context.request().path(),
+            context.get(AccessLog.UPSTREAM), context.response().getStatusCode(), context.response().bytesWritten(),
+            System.nanoTime() - start, context.get(AccessLog.ERROR)));
+        context.next();
+    }
+
+    /**
+     * Starts the span of the request if it is sampled, must be the first handler of the router.
+     */
+    public void traceRequest(RoutingContext context) {
+        Span span = tracer.start(context.request().headers(),
+            context.request().method() + " " + context.request().path());
+        if (span != null) {
+            context.put(TRACE_SPAN, span);
+            context.addBodyEndHandler(v -> span.tag("status", context.response().getStatusCode()).finish());
+        }
+        context.next();
+    }
+
+    /**
+     * @return the headers propagating the trace of the request to the upstream requests sent on its behalf
+     * (see {@link #request}), null if the request is not sampled
+     */
+    public MultiMap traceHeaders(RoutingContext context) {
+        Span span = context.get(TRACE_SPAN);
+        return span == null ? null : MultiMap.caseInsensitiveMultiMap().add(Tracer.TRACEPARENT, span.traceparent());
+    }
+
+    /**
+     * Writes the most recent spans of this service, optionally only those of the <i>trace-id</i> parameter.
+     */
+    public void traces(RoutingContext context) {
+        int limit;
+        try {
+            limit = context.request().getParam("limit") == null ? 100 :
+                Integer.parseInt(context.request().getParam("limit"));
+        } catch (NumberFormatException e) {
+            badRequest(context, e);
+            return;
+        }
+        context.response()
+            .putHeader("content-type", "application/json; charset=utf-8")
+            .end(new JsonObject()
+                .put("service", tracer.getServiceName())
+                .put("spans", tracer.recent(context.request().getParam("trace-id"), limit))
+                .encodePrettily());
+    }
+
+    /**
+     * Writes the upstream latency histograms in the Prometheus text format.
+     */
+    public void prometheusMetrics(RoutingContext context) {
+        endpointRegistry.getHistograms().writePrometheus(context.response());
+    }
+
+    /**
+     * @return the event bus services of the route if it is configured with the event bus transport (in the
+     * <i>transport</i> block) and the request is buffered, the HTTP endpoints otherwise or if there are none
+     */
+    private List<Record> endpointsOf(RouteTable.Route route, boolean buffered) {
+        if (buffered && !route.getEventBusEndpoints().isEmpty() && isEventBusRoute(route.getApiName())) {
+            return route.getEventBusEndpoints();
+        }
+        return route.getEndpoints();
+    }
+
+    private boolean isEventBusRoute(String apiName) {
+        Boolean eventBus = eventBusRoutes.get(apiName);
+        if (eventBus == null) {
+            JsonObject options = transportOptions();
+            String transport = options.getJsonObject("routes", new JsonObject())
+                .getString(apiName, options.getString("default", EventBusTransport.HTTP));
+            eventBus = EventBusTransport.EVENT_BUS.equals(transport);
+            eventBusRoutes.put(apiName, eventBus);
+            logger.info("Using [" + transport + "] transport for api [" + apiName + "]");
+        }
+        return eventBus;
+    }
+
+    private LoadBalancer getLoadBalancer(String apiName) {
+        LoadBalancer loadBalancer = loadBalancers.get(apiName);
+        if (loadBalancer == null) {
+            String strategy = loadBalancerRoutes.getOrDefault(apiName, loadBalancerStrategy);
+            loadBalancer = LoadBalancer.create(strategy, endpointRegistry::getStats);
+            loadBalancers.put(apiName, loadBalancer);
+            logger.info("Using [" + strategy + "] load balancer for api [" + apiName + "]");
+        }
+        return loadBalancer;
+    }
+
+    /**
+     * @param path the path forwarded to the api
+     * @return the hedging policy of the api, null if the path (or one of its parents) is not opted in the
+     * <i>hedging</i> config
+     */
+    private HedgingPolicy getHedgingPolicy(String apiName, String path) {
+        List<String> paths = hedgingRoutes.get(apiName);
+        if (paths == null) {
+            return null;
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            if (RouteTable.isUnder(path, paths.get(i))) {
+                return hedgingPolicies.computeIfAbsent(apiName, key -> new HedgingPolicy(hedgingOptions));
+            }
+        }
+        return null;
+    }
+
+    private RouteTable getRouteTable() {
+        // rebuilt only when the registry has changed since the last build
+        if (routeTable == null || routeTable.getVersion() != endpointRegistry.getVersion()) {
+            routeTable = RouteTable.build(endpointRegistry, config.getJsonArray("routes", new JsonArray()));
+        }
+        return routeTable;
+    }
+
+    private LocalMap<String, String> publishedEndpoints() {
+        return verticle.getVertx().sharedData().getLocalMap(RestApiHelperVerticle.class.getName() + ".published");
     }
 
     // helper method dealing with failure
@@ -241,8 +1453,22 @@ public class RestApiHelperVerticle {
             .end(new JsonObject().put("message", "not_implemented").encodePrettily());
     }
 
+    private void methodNotAllowed(RoutingContext context) {
+        context.response().setStatusCode(405)
+            .putHeader("content-type", "application/json; charset=utf-8")
+            .end(new JsonObject().put("message", "method_not_allowed").encodePrettily());
+    }
+
     private void badGateway(Throwable ex, RoutingContext context) {
-        ex.printStackTrace();
+        // the failure is written off the event loop by the access log, the stack trace only at debug level
+        if (accessLog != null) {
+            context.put(AccessLog.ERROR, ex.getMessage());
+        } else {
+            logger.warn("Bad gateway: " + ex.getMessage());
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Bad gateway", ex);
+        }
         context.response()
             .setStatusCode(502)
             .putHeader("content-type", "application/json; charset=utf-8")
@@ -267,4 +1493,38 @@ public class RestApiHelperVerticle {
             .end(new JsonObject().put("error", cause).encodePrettily());
     }
 
+    /**
+     * Upstream call on the endpoint selected for a request, completing or failing the circuit breaker future.
+     */
+    @FunctionalInterface
+    private interface EndpointCall {
+        void call(Record record, Future<Object> future);
+    }
+
+    private static class HedgedRequest {
+        private final long start;
+        private final Span span;
+        private final List<Record> endpoints;
+        private final List<Attempt> attempts = new ArrayList<>(2);
+        private final List<Record> tried = new ArrayList<>(2);
+        private int outstanding;
+        private int hedges;
+        private int retries;
+        private boolean done;
+        private boolean rejected;
+        private long timer = -1;
+
+        HedgedRequest(long start, Span span, List<Record> endpoints) {
+            this.start = start;
+            this.span = span;
+            this.endpoints = endpoints;
+        }
+    }
+
+    private static class Attempt {
+        private HttpClientRequest request;
+        private Future<UpstreamResponse> result;
+        private boolean hedge;
+        private boolean settled;
+    }
 }
@@ -0,0 +1,59 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Token bucket bounding retries and hedged requests to a share of the traffic: every request deposits <i>ratio</i>
+ * tokens, every extra attempt withdraws one, and <i>min-per-second</i> tokens are added over time so that low
+ * traffic can still retry. The bucket holds at most <i>max-tokens</i>, so extra attempts cannot amplify an overload.
+ * A budget is bound to the event loop of the verticle which created it.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double minPerSecond;
+    private final double maxTokens;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long withdrawn;
+    private long exhausted;
+
+    public RetryBudget(JsonObject options) {
+        this.ratio = options.getDouble("ratio", 0.1);
+        this.minPerSecond = options.getDouble("min-per-second", 10.0);
+        this.maxTokens = options.getDouble("max-tokens", 100.0);
+        this.tokens = maxTokens;
+    }
+
+    public void onRequest() {
+        refill();
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * @return true if an extra attempt may be sent
+     */
+    public boolean tryWithdraw() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            withdrawn++;
+            return true;
+        }
+        exhausted++;
+        return false;
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("tokens", tokens)
+            .put("withdrawn", withdrawn)
+            .put("exhausted", exhausted);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(maxTokens, tokens + (now - lastRefill) / 1_000_000_000.0 * minPerSecond);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,19 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.servicediscovery.Record;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the candidate endpoints in turn, the default strategy.
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public Record select(List<Record> records) {
+        return records.get((next.getAndIncrement() & Integer.MAX_VALUE) % records.size());
+    }
+}
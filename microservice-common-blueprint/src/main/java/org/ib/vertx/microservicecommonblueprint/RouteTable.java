@@ -0,0 +1,210 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.servicediscovery.Record;
+import io.vertx.servicediscovery.types.EventBusService;
+import io.vertx.servicediscovery.types.HttpEndpoint;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Precompiled, immutable routing table mapping URI path prefixes to endpoint groups. Every registered
+ * <i>api.name</i> gets an implicit <i>/api.name</i> route stripping the prefix, explicit rules come from the
+ * <i>routes</i> config array, e.g.
+ * <pre>
+ * { "prefix": "/shop", "api.name": "http-client-shop", "strip-prefix": true, "rewrite": "/", "methods": ["GET"] }
+ * </pre>
+ * Prefixes are stored in a character trie, so a lookup walks the path once and allocates nothing; the longest
+ * prefix ending on a segment boundary wins.
+ * <p>
+ * The endpoints of a route are split by transport: HTTP endpoints and event bus services, see
+ * {@link EventBusTransport}.
+ */
+public class RouteTable {
+
+    private final Node root = new Node();
+    private final long version;
+
+    private RouteTable(long version) {
+        this.version = version;
+    }
+
+    public static RouteTable build(EndpointRegistry registry, JsonArray rules) {
+        Map<String, List<Record>> endpoints = new HashMap<>();
+        registry.getApiNames().forEach(apiName -> endpoints.put(apiName, registry.getEndpoints(apiName)));
+        return build(registry.getVersion(), endpoints, rules);
+    }
+
+    /**
+     * @param endpoints the endpoints of every <i>api.name</i>, e.g. a snapshot of the {@link EndpointRegistry}
+     */
+    public static RouteTable build(long version, Map<String, List<Record>> endpoints, JsonArray rules) {
+        RouteTable table = new RouteTable(version);
+        endpoints.forEach((apiName, records) ->
+            table.add(new Route("/" + apiName, apiName, true, null, null, records)));
+        // explicit rules are added last so that they override the implicit ones
+        for (int i = 0; i < rules.size(); i++) {
+            JsonObject rule = rules.getJsonObject(i);
+            String apiName = rule.getString("api.name");
+            Set<HttpMethod> methods = null;
+            JsonArray methodNames = rule.getJsonArray("methods");
+            if (methodNames != null && !methodNames.isEmpty()) {
+                methods = EnumSet.noneOf(HttpMethod.class);
+                for (int j = 0; j < methodNames.size(); j++) {
+                    methods.add(HttpMethod.valueOf(methodNames.getString(j).toUpperCase()));
+                }
+            }
+            table.add(new Route(normalize(rule.getString("prefix", "/" + apiName)), apiName,
+                rule.getBoolean("strip-prefix", true), rule.getString("rewrite"), methods,
+                endpoints.getOrDefault(apiName, Collections.emptyList())));
+        }
+        return table;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the route with the longest prefix matching the path, or null if there is none
+     */
+    public Route match(String path) {
+        Node node = root;
+        Route match = null;
+        int length = path.length();
+        for (int i = 0; i <= length; i++) {
+            if (node.route != null && (i == length || isBoundary(path.charAt(i)) || path.charAt(i - 1) == '/')) {
+                match = node.route;
+            }
+            if (i == length || (node = node.child(path.charAt(i))) == null) {
+                break;
+            }
+        }
+        return match;
+    }
+
+    private void add(Route route) {
+        Node node = root;
+        for (int i = 0; i < route.prefix.length(); i++) {
+            node = node.getOrCreateChild(route.prefix.charAt(i));
+        }
+        node.route = route;
+    }
+
+    /**
+     * @return true if the path is the prefix or one of its sub-paths, on a segment boundary: /hat-provider/hats
+     * matches /hat-provider/hats?q=red but not /hat-provider/hats-x
+     */
+    public static boolean isUnder(String path, String prefix) {
+        if (!path.startsWith(prefix)) {
+            return false;
+        }
+        return path.length() == prefix.length() || prefix.endsWith("/") || isBoundary(path.charAt(prefix.length()));
+    }
+
+    private static boolean isBoundary(char c) {
+        return c == '/' || c == '?' || c == '#';
+    }
+
+    private static String normalize(String prefix) {
+        String normalized = prefix.startsWith("/") ? prefix : "/" + prefix;
+        return normalized.length() > 1 && normalized.endsWith("/") ?
+            normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+
+    public static class Route {
+        private final String prefix;
+        private final String apiName;
+        private final boolean stripPrefix;
+        private final String rewrite;
+        private final Set<HttpMethod> methods;
+        private final List<Record> endpoints;
+        private final List<Record> eventBusEndpoints;
+
+        Route(String prefix, String apiName, boolean stripPrefix, String rewrite, Set<HttpMethod> methods,
+              List<Record> endpoints) {
+            this.prefix = prefix;
+            this.apiName = apiName;
+            this.stripPrefix = stripPrefix;
+            this.rewrite = rewrite == null || rewrite.equals("/") ? null : normalize(rewrite);
+            this.methods = methods;
+            this.endpoints = Collections.unmodifiableList(endpoints.stream()
+                .filter(record -> HttpEndpoint.TYPE.equals(record.getType())).collect(Collectors.toList()));
+            this.eventBusEndpoints = Collections.unmodifiableList(endpoints.stream()
+                .filter(record -> EventBusService.TYPE.equals(record.getType())).collect(Collectors.toList()));
+        }
+
+        public String getApiName() {
+            return apiName;
+        }
+
+        /**
+         * @return the HTTP endpoints of the route
+         */
+        public List<Record> getEndpoints() {
+            return endpoints;
+        }
+
+        /**
+         * @return the event bus services of the route
+         */
+        public List<Record> getEventBusEndpoints() {
+            return eventBusEndpoints;
+        }
+
+        public boolean accepts(HttpMethod method) {
+            return methods == null || methods.contains(method);
+        }
+
+        /**
+         * @return the path forwarded to the upstream endpoint for a path matched by this route
+         */
+        public String forwardPath(String path) {
+            if (!stripPrefix) {
+                return path;
+            }
+            if (path.length() == prefix.length()) {
+                return rewrite == null ? "/" : rewrite;
+            }
+            String remainder = path.charAt(prefix.length()) == '/' ?
+                path.substring(prefix.length()) : "/" + path.substring(prefix.length());
+            return rewrite == null ? remainder : rewrite + remainder;
+        }
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Route route;
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrCreateChild(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.http.HttpMethod;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Request sent over the event bus to a service published with
+ * {@link RestApiHelperVerticle#publishEventBusService}, the equivalent of an HTTP request to its endpoint. Messages
+ * are not copied between the verticles of a JVM, they must not be modified once sent.
+ */
+public class RpcRequest {
+
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+
+    private final HttpMethod method;
+    private final String path;
+    private final MultiMap headers;
+    private final Buffer body;
+
+    public RpcRequest(HttpMethod method, String path, MultiMap headers, Buffer body) {
+        this.method = method;
+        this.path = path;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public MultiMap getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the body of the request, null if there is none
+     */
+    public Buffer getBody() {
+        return body;
+    }
+
+    static void appendString(Buffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(bytes.length).appendBytes(bytes);
+    }
+
+    static String getString(Buffer buffer, int pos) {
+        int length = buffer.getInt(pos);
+        return new String(buffer.getBytes(pos + 4, pos + 4 + length), StandardCharsets.UTF_8);
+    }
+
+    static void appendHeaders(Buffer buffer, MultiMap headers) {
+        int countPos = buffer.length();
+        buffer.appendInt(0);
+        if (headers == null) {
+            return;
+        }
+        int count = 0;
+        for (Map.Entry<String, String> header : headers) {
+            appendString(buffer, header.getKey());
+            appendString(buffer, header.getValue());
+            count++;
+        }
+        buffer.setInt(countPos, count);
+    }
+
+    /**
+     * Reads the headers at <i>pos</i> into <i>headers</i>.
+     *
+     * @return the position following the headers
+     */
+    static int getHeaders(Buffer buffer, int pos, MultiMap headers) {
+        int count = buffer.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < count; i++) {
+            String name = getString(buffer, pos);
+            pos += 4 + buffer.getInt(pos);
+            String value = getString(buffer, pos);
+            pos += 4 + buffer.getInt(pos);
+            headers.add(name, value);
+        }
+        return pos;
+    }
+
+    /**
+     * Passes the requests as they are to the local consumers and in a compact binary form over the wire: method
+     * ordinal, length-prefixed path, headers and body (-1 for no body).
+     */
+    public static class Codec implements MessageCodec<RpcRequest, RpcRequest> {
+
+        @Override
+        public void encodeToWire(Buffer buffer, RpcRequest request) {
+            buffer.appendByte((byte) request.method.ordinal());
+            appendString(buffer, request.path);
+            appendHeaders(buffer, request.headers);
+            if (request.body == null) {
+                buffer.appendInt(-1);
+            } else {
+                buffer.appendInt(request.body.length()).appendBuffer(request.body);
+            }
+        }
+
+        @Override
+        public RpcRequest decodeFromWire(int pos, Buffer buffer) {
+            HttpMethod method = METHODS[buffer.getByte(pos)];
+            String path = getString(buffer, pos + 1);
+            MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+            pos = getHeaders(buffer, pos + 5 + buffer.getInt(pos + 1), headers);
+            int bodyLength = buffer.getInt(pos);
+            Buffer body = bodyLength == -1 ? null : buffer.getBuffer(pos + 4, pos + 4 + bodyLength);
+            return new RpcRequest(method, path, headers, body);
+        }
+
+        @Override
+        public RpcRequest transform(RpcRequest request) {
+            return request;
+        }
+
+        @Override
+        public String name() {
+            return RpcRequest.class.getName();
+        }
+
+        @Override
+        public byte systemCodecID() {
+            return -1;
+        }
+    }
+}
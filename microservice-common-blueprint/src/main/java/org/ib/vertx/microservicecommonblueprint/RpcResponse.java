@@ -0,0 +1,74 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Reply of a service to an {@link RpcRequest}, the equivalent of an HTTP response. Messages are not copied between
+ * the verticles of a JVM, they must not be modified once sent (e.g. pre-encoded headers and bodies can be shared by
+ * all the replies).
+ */
+public class RpcResponse {
+
+    private final int statusCode;
+    private final MultiMap headers;
+    private final Buffer body;
+
+    public RpcResponse(int statusCode, MultiMap headers, Buffer body) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public MultiMap getHeaders() {
+        return headers;
+    }
+
+    public Buffer getBody() {
+        return body;
+    }
+
+    /**
+     * Passes the responses as they are to the local consumers and in a compact binary form over the wire: status
+     * code, length-prefixed headers and body.
+     */
+    public static class Codec implements MessageCodec<RpcResponse, RpcResponse> {
+
+        @Override
+        public void encodeToWire(Buffer buffer, RpcResponse response) {
+            buffer.appendShort((short) response.statusCode);
+            RpcRequest.appendHeaders(buffer, response.headers);
+            Buffer body = response.body == null ? Buffer.buffer() : response.body;
+            buffer.appendInt(body.length()).appendBuffer(body);
+        }
+
+        @Override
+        public RpcResponse decodeFromWire(int pos, Buffer buffer) {
+            int statusCode = buffer.getShort(pos);
+            MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+            pos = RpcRequest.getHeaders(buffer, pos + 2, headers);
+            int bodyLength = buffer.getInt(pos);
+            return new RpcResponse(statusCode, headers, buffer.getBuffer(pos + 4, pos + 4 + bodyLength));
+        }
+
+        @Override
+        public RpcResponse transform(RpcResponse response) {
+            return response;
+        }
+
+        @Override
+        public String name() {
+            return RpcResponse.class.getName();
+        }
+
+        @Override
+        public byte systemCodecID() {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A timed operation of a sampled trace, recorded in the {@link Tracer} ring buffer once finished. Spans are only
+ * created for sampled requests, nothing is allocated for the others.
+ */
+public class Span {
+
+    private final Tracer tracer;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final long startMicros;
+    private final long startNanos;
+    private final JsonObject tags = new JsonObject();
+    private volatile long durationMicros = -1;
+
+    Span(Tracer tracer, String traceId, String parentSpanId, String name) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.spanId = randomId();
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startMicros = System.currentTimeMillis() * 1000L;
+        this.startNanos = System.nanoTime();
+    }
+
+    public Span child(String name) {
+        return new Span(tracer, traceId, spanId, name);
+    }
+
+    public Span tag(String key, Object value) {
+        tags.put(key, value);
+        return this;
+    }
+
+    /**
+     * Records the span, only the first call counts.
+     */
+    public void finish() {
+        if (durationMicros < 0) {
+            durationMicros = (System.nanoTime() - startNanos) / 1000L;
+            tracer.record(this);
+        }
+    }
+
+    public boolean isFinished() {
+        return durationMicros >= 0;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * @return the W3C <i>traceparent</i> header of the requests sent on behalf of this span
+     */
+    public String traceparent() {
+        return "00-" + traceId + "-" + spanId + "-01";
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("trace-id", traceId)
+            .put("span-id", spanId)
+            .put("parent-span-id", parentSpanId)
+            .put("service", tracer.getServiceName())
+            .put("name", name)
+            .put("start-us", startMicros)
+            .put("duration-us", durationMicros)
+            .put("tags", tags);
+    }
+
+    static String randomId() {
+        return hex(ThreadLocalRandom.current().nextLong());
+    }
+
+    static String randomTraceId() {
+        return hex(ThreadLocalRandom.current().nextLong()) + hex(ThreadLocalRandom.current().nextLong());
+    }
+
+    private static String hex(long value) {
+        String hex = Long.toHexString(value);
+        return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+}
@@ -0,0 +1,97 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Head-sampled tracing with W3C <i>traceparent</i> propagation. A request continues the trace of its
+ * <i>traceparent</i> header and keeps its sampling decision, requests without one start a new trace with the
+ * <i>sample-rate</i> probability. The last <i>buffer-size</i> finished spans are kept in a lock-free ring buffer.
+ * One tracer is shared by all the verticle instances of a JVM.
+ */
+public class Tracer implements Shareable {
+
+    public static final String TRACEPARENT = "traceparent";
+
+    private final String serviceName;
+    private final boolean enabled;
+    private final double sampleRate;
+    private final AtomicReferenceArray<Span> spans;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    private Tracer(String serviceName, JsonObject options) {
+        this.serviceName = serviceName;
+        this.enabled = options.getBoolean("enabled", false);
+        this.sampleRate = options.getDouble("sample-rate", 0.01);
+        // rounded up to a power of two, so the slot of a span is a mask of its sequence number
+        int size = Integer.highestOneBit(Math.max(2, options.getInteger("buffer-size", 4096)) * 2 - 1);
+        this.spans = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public static Tracer getOrCreate(Vertx vertx, String serviceName, JsonObject options) {
+        LocalMap<String, Tracer> shared = vertx.sharedData().getLocalMap(Tracer.class.getName());
+        Tracer candidate = new Tracer(serviceName, options);
+        Tracer existing = shared.putIfAbsent("tracer", candidate);
+        return existing == null ? candidate : existing;
+    }
+
+    /**
+     * @return the span of the request with these headers, null if the request is not sampled
+     */
+    public Span start(MultiMap headers, String name) {
+        if (!enabled) {
+            return null;
+        }
+        String traceparent = headers == null ? null : headers.get(TRACEPARENT);
+        if (traceparent != null && isValid(traceparent)) {
+            // version-traceid-parentid-flags, the sampling decision of the caller is kept
+            if ((Character.digit(traceparent.charAt(54), 16) & 1) == 0) {
+                return null;
+            }
+            return new Span(this, traceparent.substring(3, 35), traceparent.substring(36, 52), name);
+        }
+        if (sampleRate <= 0.0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return new Span(this, Span.randomTraceId(), null, name);
+    }
+
+    void record(Span span) {
+        spans.set((int) (next.getAndIncrement() & mask), span);
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return the most recent spans first, only those of the trace if a trace id is given
+     */
+    public JsonArray recent(String traceId, int limit) {
+        JsonArray result = new JsonArray();
+        long last = next.get() - 1;
+        for (long i = last; i >= 0 && i > last - spans.length() && result.size() < limit; i--) {
+            Span span = spans.get((int) (i & mask));
+            if (span != null && (traceId == null || traceId.equals(span.getTraceId()))) {
+                result.add(span.toJson());
+            }
+        }
+        return result;
+    }
+
+    private static boolean isValid(String traceparent) {
+        return traceparent.length() >= 55 && traceparent.charAt(2) == '-' && traceparent.charAt(35) == '-'
+            && traceparent.charAt(52) == '-' && !traceparent.startsWith("ff")
+            && !traceparent.startsWith("00000000000000000000000000000000", 3);
+    }
+}
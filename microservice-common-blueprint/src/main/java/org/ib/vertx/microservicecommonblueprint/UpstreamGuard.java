@@ -0,0 +1,42 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.circuitbreaker.CircuitBreaker;
+import io.vertx.circuitbreaker.CircuitBreakerState;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Circuit breaker and bulkhead protecting one upstream, i.e. an <i>api.name</i> or a single service record.
+ */
+public class UpstreamGuard {
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+
+    public UpstreamGuard(CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public boolean isOpen() {
+        return circuitBreaker.state() == CircuitBreakerState.OPEN;
+    }
+
+    public void close() {
+        circuitBreaker.close();
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("state", circuitBreaker.state().name())
+            .put("failures", circuitBreaker.failureCount())
+            .put("bulkhead", bulkhead.toJson());
+    }
+}
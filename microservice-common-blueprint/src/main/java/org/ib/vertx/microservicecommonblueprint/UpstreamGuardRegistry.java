@@ -0,0 +1,142 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.circuitbreaker.CircuitBreaker;
+import io.vertx.circuitbreaker.CircuitBreakerOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.servicediscovery.Record;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Keeps one {@link UpstreamGuard} per <i>api.name</i> and one per service record, so a degraded upstream only
+ * trips its own breaker. Thresholds come from the <i>circuit-breaker</i> and <i>bulkhead</i> config blocks, where
+ * the <i>routes</i> entries override the defaults per api.name and the <i>endpoints</i> entry applies to every record.
+ * One registry is shared by all the verticle instances of a JVM, so the limits apply to the JVM as a whole and a
+ * breaker trips once for all the event loops; it is closed when its last user releases it.
+ */
+public class UpstreamGuardRegistry implements Shareable {
+
+    private final Vertx vertx;
+    private final JsonObject breakerOptions;
+    private final JsonObject bulkheadOptions;
+    private final Map<String, UpstreamGuard> routeGuards = new ConcurrentHashMap<>();
+    private final Map<String, UpstreamGuard> endpointGuards = new ConcurrentHashMap<>();
+    private final Map<String, String> endpointNames = new ConcurrentHashMap<>();
+    // guarded by the class lock
+    private int users;
+
+    private UpstreamGuardRegistry(Vertx vertx, JsonObject breakerOptions, JsonObject bulkheadOptions) {
+        this.vertx = vertx;
+        this.breakerOptions = breakerOptions;
+        this.bulkheadOptions = bulkheadOptions;
+    }
+
+    /**
+     * @return the registry of this JVM, replaced by a new one when the options have changed; every caller must
+     * {@link #release()} it
+     */
+    public static synchronized UpstreamGuardRegistry acquire(Vertx vertx, JsonObject breakerOptions,
+                                                             JsonObject bulkheadOptions) {
+        LocalMap<String, UpstreamGuardRegistry> shared = sharedRegistries(vertx);
+        UpstreamGuardRegistry registry = shared.get("registry");
+        if (registry == null || !registry.breakerOptions.equals(breakerOptions) ||
+            !registry.bulkheadOptions.equals(bulkheadOptions)) {
+            // the replaced registry is closed by the release of its last user
+            registry = new UpstreamGuardRegistry(vertx, breakerOptions, bulkheadOptions);
+            shared.put("registry", registry);
+        }
+        registry.users++;
+        return registry;
+    }
+
+    /**
+     * Closes the circuit breakers once the last user has released the registry.
+     */
+    public void release() {
+        synchronized (UpstreamGuardRegistry.class) {
+            if (--users > 0) {
+                return;
+            }
+            sharedRegistries(vertx).removeIfPresent("registry", this);
+        }
+        close();
+    }
+
+    public UpstreamGuard forRoute(String apiName) {
+        return routeGuards.computeIfAbsent(apiName, key ->
+            create(breakerOptions.getString("name", "circuit-breaker") + "." + apiName,
+                overrides(breakerOptions, "routes", apiName), overrides(bulkheadOptions, "routes", apiName)));
+    }
+
+    public UpstreamGuard forEndpoint(Record record) {
+        return endpointGuards.computeIfAbsent(record.getRegistration(), registration -> {
+            endpointNames.put(registration, record.getName() + "@" + EndpointRegistry.address(record));
+            return create(breakerOptions.getString("name", "circuit-breaker") + "." + registration,
+                overrides(breakerOptions, "endpoints", null), overrides(bulkheadOptions, "endpoints", null));
+        });
+    }
+
+    /**
+     * @return the default timeout of the circuit breakers in ms
+     */
+    public long getTimeout() {
+        return breakerOptions.getLong("timeout", 500L);
+    }
+
+    public void evict(Predicate<String> registered) {
+        endpointGuards.forEach((registration, guard) -> {
+            // every verticle instance evicts on a registry change, only the first one closes the guard
+            if (!registered.test(registration) && endpointGuards.remove(registration, guard)) {
+                guard.close();
+                endpointNames.remove(registration);
+            }
+        });
+    }
+
+    private void close() {
+        routeGuards.values().forEach(UpstreamGuard::close);
+        endpointGuards.values().forEach(UpstreamGuard::close);
+        routeGuards.clear();
+        endpointGuards.clear();
+        endpointNames.clear();
+    }
+
+    public JsonObject toJson() {
+        JsonObject routes = new JsonObject();
+        routeGuards.forEach((apiName, guard) -> routes.put(apiName, guard.toJson()));
+        JsonObject endpoints = new JsonObject();
+        endpointGuards.forEach((registration, guard) ->
+            endpoints.put(registration, guard.toJson().put("endpoint", endpointNames.get(registration))));
+        return new JsonObject().put("routes", routes).put("endpoints", endpoints);
+    }
+
+    private UpstreamGuard create(String name, JsonObject breaker, JsonObject bulkhead) {
+        CircuitBreaker circuitBreaker = CircuitBreaker.create(name, vertx,
+            new CircuitBreakerOptions()
+                .setMaxFailures(breaker.getInteger("max-failures", 20))
+                .setTimeout(breaker.getLong("timeout", 500L))
+                .setFallbackOnFailure(true)
+                .setResetTimeout(breaker.getLong("reset-timeout", 2000L))
+                .setNotificationAddress(null)
+        );
+        return new UpstreamGuard(circuitBreaker, new Bulkhead(bulkhead));
+    }
+
+    private static LocalMap<String, UpstreamGuardRegistry> sharedRegistries(Vertx vertx) {
+        return vertx.sharedData().getLocalMap(UpstreamGuardRegistry.class.getName());
+    }
+
+    private static JsonObject overrides(JsonObject options, String section, String key) {
+        JsonObject defaults = options.copy();
+        defaults.remove("routes");
+        defaults.remove("endpoints");
+        JsonObject sectionOptions = options.getJsonObject(section, new JsonObject());
+        JsonObject specific = key == null ? sectionOptions : sectionOptions.getJsonObject(key, new JsonObject());
+        return defaults.mergeIn(specific);
+    }
+}
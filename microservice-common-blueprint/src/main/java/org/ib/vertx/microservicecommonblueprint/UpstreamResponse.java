@@ -0,0 +1,34 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Fully buffered response of an upstream endpoint, handed to the caller of
+ * {@link RestApiHelperVerticle#dispatchRequests(io.vertx.ext.web.RoutingContext, String, io.vertx.core.Handler)}
+ * instead of being written to the client.
+ */
+public class UpstreamResponse {
+
+    private final int statusCode;
+    private final MultiMap headers;
+    private final Buffer body;
+
+    public UpstreamResponse(int statusCode, MultiMap headers, Buffer body) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public MultiMap getHeaders() {
+        return headers;
+    }
+
+    public Buffer getBody() {
+        return body;
+    }
+}
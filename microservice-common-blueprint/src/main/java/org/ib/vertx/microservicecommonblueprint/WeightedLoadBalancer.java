@@ -0,0 +1,37 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.servicediscovery.Record;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random selection proportional to the <i>weight</i> metadata of the published records (default 1).
+ */
+public class WeightedLoadBalancer implements LoadBalancer {
+
+    public static final String WEIGHT = "weight";
+
+    @Override
+    public Record select(List<Record> records) {
+        int totalWeight = 0;
+        for (Record record : records) {
+            totalWeight += weight(record);
+        }
+        if (totalWeight == 0) {
+            return records.get(ThreadLocalRandom.current().nextInt(records.size()));
+        }
+        int point = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Record record : records) {
+            point -= weight(record);
+            if (point < 0) {
+                return record;
+            }
+        }
+        return records.get(records.size() - 1);
+    }
+
+    private static int weight(Record record) {
+        return Math.max(0, record.getMetadata().getInteger(WEIGHT, 1));
+    }
+}
@@ -0,0 +1,113 @@
+package org.ib.vertx.microservicecommonblueprint;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.servicediscovery.Record;
+import io.vertx.servicediscovery.ServiceDiscovery;
+import io.vertx.servicediscovery.ServiceDiscoveryOptions;
+import io.vertx.servicediscovery.types.HttpEndpoint;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the registry against an embedded Redis backend: a published record is found, then evicted once its lease
+ * is no longer renewed.
+ */
+public class EndpointRegistryTest {
+
+    private static final int REDIS_PORT = 18761;
+    private static final String API_NAME = "registry-test";
+    private static final long LEASE_TTL = 1000;
+
+    private static RedisServer redis;
+    private Vertx vertx;
+    private ServiceDiscovery discovery;
+    private EndpointRegistry registry;
+
+    @BeforeClass
+    public static void startRedis() throws Exception {
+        redis = new RedisServer(REDIS_PORT);
+        redis.start();
+    }
+
+    @AfterClass
+    public static void stopRedis() {
+        redis.stop();
+    }
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        JsonObject backendConfiguration = new JsonObject()
+            .put("host", "127.0.0.1")
+            .put("port", REDIS_PORT)
+            .put("key", "records");
+        discovery = ServiceDiscovery.create(vertx, new ServiceDiscoveryOptions()
+            .setBackendConfiguration(backendConfiguration));
+        registry = EndpointRegistry.acquire(vertx, backendConfiguration, new JsonObject()
+            .put("ttl", 200)
+            .put("lease-check-interval", 100));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.release();
+        discovery.close();
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(ar -> closed.complete(null));
+        closed.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void evictsRecordsWhoseLeaseExpired() throws Exception {
+        Record record = HttpEndpoint.createRecord("registry-test-service", "127.0.0.1", 9999, "/",
+            new JsonObject()
+                .put("api.name", API_NAME)
+                .put(EndpointRegistry.LEASE_TTL, LEASE_TTL)
+                .put(EndpointRegistry.LEASE_RENEWED, System.currentTimeMillis()));
+        CompletableFuture<Record> published = new CompletableFuture<>();
+        discovery.publish(record, ar -> {
+            if (ar.succeeded()) {
+                published.complete(ar.result());
+            } else {
+                published.completeExceptionally(ar.cause());
+            }
+        });
+        String registration = published.get(5, TimeUnit.SECONDS).getRegistration();
+
+        await(() -> registry.getEndpoints(API_NAME).size() == 1, LEASE_TTL);
+        List<Record> endpoints = registry.getEndpoints(API_NAME);
+        assertEquals(registration, endpoints.get(0).getRegistration());
+        assertEquals("127.0.0.1:9999", EndpointRegistry.address(endpoints.get(0)));
+
+        // the lease is never renewed
+        await(() -> registry.getEndpoints(API_NAME).isEmpty(), 3 * LEASE_TTL);
+        assertTrue(registry.getExpired() >= 1);
+
+        // and the record was removed from the backend
+        CompletableFuture<Record> lookup = new CompletableFuture<>();
+        discovery.getRecord(r -> registration.equals(r.getRegistration()), ar -> lookup.complete(ar.result()));
+        assertNull(lookup.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(BooleanSupplier condition, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met within " + timeout + " ms", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
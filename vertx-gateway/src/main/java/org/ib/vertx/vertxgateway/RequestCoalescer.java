@@ -0,0 +1,172 @@
+package org.ib.vertx.vertxgateway;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+import org.ib.vertx.microservicecommonblueprint.ResponseCompression;
+import org.ib.vertx.microservicecommonblueprint.RouteTable;
+import org.ib.vertx.microservicecommonblueprint.UpstreamResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight layer: concurrent identical GETs on the opted-in <i>routes</i> (paths, along with their sub-paths)
+ * share one in-flight upstream request, whose response is handed to every waiter on its own context. Nothing is
+ * kept once the upstream request has completed. At most <i>max-waiters</i> requests join a flight, the next ones are
+ * dispatched on their own. The in-flight requests are shared by all the verticle instances of the JVM.
+ */
+public class RequestCoalescer {
+
+    private final Vertx vertx;
+    private final UpstreamDispatcher dispatcher;
+    private final List<String> routes = new ArrayList<>();
+    private final List<String> keyHeaders = new ArrayList<>();
+    private final int maxWaiters;
+    private final Flights flights;
+
+    public RequestCoalescer(Vertx vertx, UpstreamDispatcher dispatcher, JsonObject options) {
+        this.vertx = vertx;
+        this.dispatcher = dispatcher;
+        this.maxWaiters = options.getInteger("max-waiters", 64);
+        JsonArray routeArray = options.getJsonArray("routes", new JsonArray());
+        for (int i = 0; i < routeArray.size(); i++) {
+            routes.add(routeArray.getString(i));
+        }
+        JsonArray headerArray = options.getJsonArray("key-headers", new JsonArray());
+        for (int i = 0; i < headerArray.size(); i++) {
+            keyHeaders.add(headerArray.getString(i));
+        }
+        LocalMap<String, Flights> shared = vertx.sharedData().getLocalMap(RequestCoalescer.class.getName());
+        Flights candidate = new Flights();
+        Flights existing = shared.putIfAbsent("flights", candidate);
+        this.flights = existing == null ? candidate : existing;
+    }
+
+    public boolean isCoalescable(HttpServerRequest request, String uriPath) {
+        if (request.method() != HttpMethod.GET) {
+            return false;
+        }
+        for (String route : routes) {
+            if (RouteTable.isUnder(uriPath, route)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void dispatch(RoutingContext context, String uriPath, Handler<UpstreamResponse> responseHandler) {
+        if (!isCoalescable(context.request(), uriPath)) {
+            dispatcher.dispatch(context, uriPath, responseHandler);
+            return;
+        }
+        String key = key(context.request(), uriPath);
+        Waiter waiter = new Waiter(vertx.getOrCreateContext(), context, responseHandler);
+        Flight flight = new Flight();
+        Flight existing = flights.inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            if (existing.join(waiter, maxWaiters)) {
+                flights.coalesced.incrementAndGet();
+                return;
+            }
+            // full or just completed, go upstream alone
+            dispatcher.dispatch(context, uriPath, responseHandler);
+            return;
+        }
+        flights.leaders.incrementAndGet();
+        // upstream failures are answered to the leader by the dispatcher, forward the status to the waiters
+        context.addBodyEndHandler(v -> fail(key, flight, context.response().getStatusCode()));
+        context.response().closeHandler(v -> fail(key, flight, 502));
+        dispatcher.dispatch(context, uriPath, response -> {
+            flights.inFlight.remove(key, flight);
+            List<Waiter> waiters = flight.complete();
+            responseHandler.handle(response);
+            waiters.forEach(other -> other.context.runOnContext(v -> other.responseHandler.handle(response)));
+        });
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("in-flight", flights.inFlight.size())
+            .put("leaders", flights.leaders.get())
+            .put("coalesced", flights.coalesced.get());
+    }
+
+    private void fail(String key, Flight flight, int statusCode) {
+        flights.inFlight.remove(key, flight);
+        List<Waiter> waiters = flight.complete();
+        waiters.forEach(waiter -> waiter.context.runOnContext(v -> {
+            if (!waiter.routingContext.response().ended()) {
+                waiter.routingContext.response()
+                    .setStatusCode(statusCode < 500 ? 502 : statusCode)
+                    .putHeader("content-type", "application/json; charset=utf-8")
+                    .end(new JsonObject().put("error", "bad_gateway")
+                        .put("message", "coalesced upstream request failed").encodePrettily());
+            }
+        }));
+    }
+
+    private String key(HttpServerRequest request, String uriPath) {
+        StringBuilder key = new StringBuilder(uriPath);
+        // keyed by the encoding forwarded upstream, see ResponseCompression#normalize
+        key.append('\n').append(ResponseCompression.normalize(request.headers()));
+        String etag = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        key.append('\n').append(etag == null ? "" : etag);
+        for (String header : keyHeaders) {
+            String value = request.getHeader(header);
+            key.append('\n').append(value == null ? "" : value);
+        }
+        return key.toString();
+    }
+
+    private static class Flight {
+        private List<Waiter> waiters = new ArrayList<>();
+
+        synchronized boolean join(Waiter waiter, int maxWaiters) {
+            if (waiters == null || waiters.size() >= maxWaiters) {
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        /**
+         * @return the waiters to notify, empty if the flight was already completed
+         */
+        synchronized List<Waiter> complete() {
+            List<Waiter> completed = waiters == null ? Collections.emptyList() : waiters;
+            waiters = null;
+            return completed;
+        }
+    }
+
+    private static class Waiter {
+        private final Context context;
+        private final RoutingContext routingContext;
+        private final Handler<UpstreamResponse> responseHandler;
+
+        Waiter(Context context, RoutingContext routingContext, Handler<UpstreamResponse> responseHandler) {
+            this.context = context;
+            this.routingContext = routingContext;
+            this.responseHandler = responseHandler;
+        }
+    }
+
+    private static class Flights implements Shareable {
+        private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+        private final AtomicLong leaders = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+    }
+}
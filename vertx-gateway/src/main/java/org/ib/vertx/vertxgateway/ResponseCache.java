@@ -0,0 +1,256 @@
+package org.ib.vertx.vertxgateway;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.CaseInsensitiveHeaders;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+import org.ib.vertx.microservicecommonblueprint.ResponseCompression;
+import org.ib.vertx.microservicecommonblueprint.RestApiHelperVerticle;
+import org.ib.vertx.microservicecommonblueprint.UpstreamResponse;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the upstream responses to idempotent GETs, sitting in front of an {@link UpstreamDispatcher}.
+ * Entries are keyed on path and the configured <i>key-headers</i>. Only the responses the upstream declared cacheable
+ * are stored: they live as long as their <i>Cache-Control</i> max-age allows and, if the upstream sent an
+ * <i>ETag</i>, are revalidated with <i>If-None-Match</i> once expired (after <i>default-ttl</i> ms, 0 by default,
+ * without max-age) or when the client asks for it (<i>no-cache</i> or <i>max-age=0</i>). A client <i>no-store</i>
+ * bypasses the cache. The cache is bounded by <i>max-entries</i> and <i>max-bytes</i>.
+ * <p>
+ * There is one cache per verticle instance, only used from its event loop; the counters are shared by the JVM.
+ */
+public class ResponseCache {
+
+    private final RestApiHelperVerticle helperVerticle;
+    private final UpstreamDispatcher dispatcher;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long defaultTtl;
+    private final List<String> keyHeaders = new ArrayList<>();
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counters counters;
+    private long bytes;
+
+    public ResponseCache(Vertx vertx, RestApiHelperVerticle helperVerticle, UpstreamDispatcher dispatcher,
+                         JsonObject options) {
+        this.helperVerticle = helperVerticle;
+        this.dispatcher = dispatcher;
+        this.maxEntries = options.getInteger("max-entries", 10000);
+        this.maxBytes = options.getLong("max-bytes", 64L * 1024 * 1024);
+        this.defaultTtl = options.getLong("default-ttl", 0L);
+        JsonArray headers = options.getJsonArray("key-headers", new JsonArray());
+        for (int i = 0; i < headers.size(); i++) {
+            keyHeaders.add(headers.getString(i));
+        }
+        LocalMap<String, Counters> shared = vertx.sharedData().getLocalMap(ResponseCache.class.getName());
+        Counters candidate = new Counters();
+        Counters existing = shared.putIfAbsent("counters", candidate);
+        this.counters = existing == null ? candidate : existing;
+    }
+
+    public boolean isCacheable(HttpServerRequest request) {
+        if (request.method() != HttpMethod.GET) {
+            return false;
+        }
+        String cacheControl = request.getHeader(HttpHeaders.CACHE_CONTROL);
+        return cacheControl == null || !cacheControl.contains("no-store");
+    }
+
+    public void dispatch(RoutingContext context, String uriPath) {
+        HttpServerRequest request = context.request();
+        String key = key(request, uriPath);
+        String clientEtag = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        long now = System.currentTimeMillis();
+        Entry cached = entries.get(key);
+        if (cached != null && cached.expiresAt > now && !isRevalidationRequired(request)) {
+            counters.hits.incrementAndGet();
+            serve(context, cached, clientEtag, "HIT");
+            return;
+        }
+        if (cached != null && cached.etag != null) {
+            // expired, ask the upstream whether the cached body is still valid
+            counters.revalidations.incrementAndGet();
+            request.headers().set(HttpHeaders.IF_NONE_MATCH, cached.etag);
+        } else {
+            counters.misses.incrementAndGet();
+        }
+        dispatcher.dispatch(context, uriPath, response -> {
+            if (response.getStatusCode() == 304 && cached != null && cached.etag != null) {
+                cached.expiresAt = System.currentTimeMillis() + ttl(response.getHeaders());
+                serve(context, cached, clientEtag, "REVALIDATED");
+                return;
+            }
+            Entry entry = store(key, response);
+            if (entry == null) {
+                if (cached != null) {
+                    remove(key);
+                }
+                helperVerticle.respond(context, response);
+            } else {
+                serve(context, entry, clientEtag, "MISS");
+            }
+        });
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("entries", entries.size())
+            .put("bytes", bytes)
+            .put("hits", counters.hits.get())
+            .put("misses", counters.misses.get())
+            .put("revalidations", counters.revalidations.get())
+            .put("evictions", counters.evictions.get());
+    }
+
+    private void serve(RoutingContext context, Entry entry, String clientEtag, String cacheStatus) {
+        HttpServerResponse response = context.response();
+        response.headers().addAll(entry.headers);
+        response.putHeader("x-cache", cacheStatus);
+        if (entry.etag != null && clientEtag != null && (clientEtag.equals(entry.etag) || clientEtag.equals("*"))) {
+            response.headers().remove(HttpHeaders.CONTENT_LENGTH);
+            response.setStatusCode(304).end();
+        } else {
+            response.setStatusCode(entry.statusCode).end(entry.body);
+        }
+    }
+
+    private Entry store(String key, UpstreamResponse response) {
+        if (response.getStatusCode() != 200) {
+            return null;
+        }
+        String cacheControl = response.getHeaders().get(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl != null && (cacheControl.contains("no-store") || cacheControl.contains("private"))) {
+            return null;
+        }
+        String etag = response.getHeaders().get(HttpHeaders.ETAG);
+        long ttl = ttl(response.getHeaders());
+        if (ttl <= 0 && etag == null) {
+            return null;
+        }
+        Buffer body = response.getBody();
+        MultiMap headers = new CaseInsensitiveHeaders();
+        response.getHeaders().forEach(header -> {
+            if (!HttpHeaders.TRANSFER_ENCODING.toString().equalsIgnoreCase(header.getKey())
+                && !HttpHeaders.CONNECTION.toString().equalsIgnoreCase(header.getKey())) {
+                headers.add(header.getKey(), header.getValue());
+            }
+        });
+        Entry entry = new Entry(response.getStatusCode(), headers, body, etag, System.currentTimeMillis() + ttl);
+        if (entry.size > maxBytes) {
+            return null;
+        }
+        remove(key);
+        entries.put(key, entry);
+        bytes += entry.size;
+        evict();
+        return entry;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            bytes -= eldest.size;
+            counters.evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return true if the client does not accept a cached response without checking it with the upstream
+     */
+    private static boolean isRevalidationRequired(HttpServerRequest request) {
+        String cacheControl = request.getHeader(HttpHeaders.CACHE_CONTROL);
+        return cacheControl != null && (cacheControl.contains("no-cache") || maxAge(cacheControl, "max-age=") == 0);
+    }
+
+    /**
+     * @return how long the response is fresh in ms, 0 if the upstream gave no freshness (e.g. an order), in which
+     * case it is only cached if it carries an ETag to revalidate it with
+     */
+    private long ttl(MultiMap headers) {
+        String cacheControl = headers.get(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl != null && cacheControl.contains("no-cache")) {
+            return 0;
+        }
+        long maxAge = cacheControl == null ? -1 : maxAge(cacheControl, "s-maxage=");
+        if (maxAge < 0 && cacheControl != null) {
+            maxAge = maxAge(cacheControl, "max-age=");
+        }
+        if (maxAge >= 0) {
+            return maxAge * 1000;
+        }
+        return headers.contains(HttpHeaders.ETAG) ? defaultTtl : 0;
+    }
+
+    private static long maxAge(String cacheControl, String directive) {
+        int index = cacheControl.indexOf(directive);
+        if (index < 0) {
+            return -1;
+        }
+        int start = index + directive.length();
+        int end = start;
+        while (end < cacheControl.length() && Character.isDigit(cacheControl.charAt(end))) {
+            end++;
+        }
+        return end == start ? -1 : Long.parseLong(cacheControl.substring(start, end));
+    }
+
+    private String key(HttpServerRequest request, String uriPath) {
+        StringBuilder key = new StringBuilder(request.method().name()).append(' ').append(uriPath);
+        // keyed by the encoding forwarded upstream, see ResponseCompression#normalize
+        key.append('\n').append(ResponseCompression.normalize(request.headers()));
+        for (String header : keyHeaders) {
+            String value = request.getHeader(header);
+            key.append('\n').append(value == null ? "" : value);
+        }
+        return key.toString();
+    }
+
+    private static class Entry {
+        private final int statusCode;
+        private final MultiMap headers;
+        private final Buffer body;
+        private final String etag;
+        private final long size;
+        private long expiresAt;
+
+        Entry(int statusCode, MultiMap headers, Buffer body, String etag, long expiresAt) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+            this.etag = etag;
+            this.expiresAt = expiresAt;
+            this.size = body.length();
+        }
+    }
+
+    private static class Counters implements Shareable {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong revalidations = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+    }
+}
@@ -0,0 +1,15 @@
+package org.ib.vertx.vertxgateway;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import org.ib.vertx.microservicecommonblueprint.UpstreamResponse;
+
+/**
+ * Dispatches a request upstream and hands the buffered response to the handler, see
+ * {@link org.ib.vertx.microservicecommonblueprint.RestApiHelperVerticle#dispatchRequests(RoutingContext, String, Handler)}.
+ */
+@FunctionalInterface
+public interface UpstreamDispatcher {
+
+    void dispatch(RoutingContext context, String uriPath, Handler<UpstreamResponse> responseHandler);
+}
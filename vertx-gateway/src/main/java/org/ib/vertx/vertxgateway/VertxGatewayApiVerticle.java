@@ -17,10 +17,14 @@ public class VertxGatewayApiVerticle extends AbstractVerticle {
     public final static Logger logger = Logger.getLogger(VertxGatewayApiVerticle.class);
     private RestApiHelperVerticle helperVerticle;
     private MetricsService metricsService;
+    private ResponseCache responseCache;
+    private RequestCoalescer requestCoalescer;
 
     private static final String SERVICE_NAME = "vertx-gateway";
     private static final String API_NAME = "vertx-gateway";
     private static final String API_PROVIDE_METRICS = "/metrics";
+    private static final String API_TRACES = "/traces";
+    private static final String API_PROVIDE_PROMETHEUS_METRICS = "/metrics/prometheus";
 
     private static final String API_ROOT = "/*";
 
@@ -30,8 +34,12 @@ public class VertxGatewayApiVerticle extends AbstractVerticle {
         Router router = Router.router(vertx);
 
         // Record endpoints.
+        router.route().handler(this::trace);
         router.get(API_PROVIDE_METRICS).handler(this::metrics);
+        router.get(API_TRACES).handler(this::traces);
+        router.get(API_PROVIDE_PROMETHEUS_METRICS).handler(this::prometheusMetrics);
         router.get(API_ROOT).handler(this::dispatch);
+        router.post(API_ROOT).handler(this::dispatch);
 
         String serviceName = config().getString("api.name", SERVICE_NAME);
         String apiName = config().getString("service.name", API_NAME);
@@ -46,6 +54,18 @@ public class VertxGatewayApiVerticle extends AbstractVerticle {
             .compose(serverCreated -> helperVerticle.publishHttpEndpoint(serviceName, host, port, apiName))
             .setHandler(startFuture.completer());
 
+        // Create the optional coalescing of identical in-flight GETs and cache of upstream GET responses
+        UpstreamDispatcher dispatcher = helperVerticle::dispatchRequests;
+        JsonObject coalescingOptions = config().getJsonObject("coalescing", new JsonObject());
+        if (coalescingOptions.getBoolean("enabled", false)) {
+            requestCoalescer = new RequestCoalescer(vertx, dispatcher, coalescingOptions);
+            dispatcher = requestCoalescer::dispatch;
+        }
+        JsonObject cacheOptions = config().getJsonObject("response-cache", new JsonObject());
+        if (cacheOptions.getBoolean("enabled", false)) {
+            responseCache = new ResponseCache(vertx, helperVerticle, dispatcher, cacheOptions);
+        }
+
         // Create the metrics service which returns a snapshot of measured objects
         metricsService = MetricsService.create(vertx);
 
@@ -60,12 +80,40 @@ public class VertxGatewayApiVerticle extends AbstractVerticle {
 
     private void dispatch(RoutingContext routingContext) {
         String uriPath = routingContext.request().uri();
-        logger.debug("Dispatching request for uri " + uriPath);
-        helperVerticle.dispatchRequests(routingContext, uriPath);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Dispatching request for uri " + uriPath);
+        }
+        if (responseCache != null && responseCache.isCacheable(routingContext.request())) {
+            responseCache.dispatch(routingContext, uriPath);
+        } else if (requestCoalescer != null && requestCoalescer.isCoalescable(routingContext.request(), uriPath)) {
+            requestCoalescer.dispatch(routingContext, uriPath,
+                response -> helperVerticle.respond(routingContext, response));
+        } else {
+            helperVerticle.dispatchRequests(routingContext, uriPath);
+        }
+    }
+
+    private void prometheusMetrics(RoutingContext routingContext) {
+        helperVerticle.prometheusMetrics(routingContext);
+    }
+
+    private void trace(RoutingContext routingContext) {
+        helperVerticle.traceRequest(routingContext);
+    }
+
+    private void traces(RoutingContext routingContext) {
+        helperVerticle.traces(routingContext);
     }
 
     private void metrics(RoutingContext routingContext) {
         JsonObject metrics = metricsService.getMetricsSnapshot(vertx);
+        metrics.put("upstreams", helperVerticle.getUpstreamMetrics());
+        if (responseCache != null) {
+            metrics.put("response-cache", responseCache.toJson());
+        }
+        if (requestCoalescer != null) {
+            metrics.put("coalescing", requestCoalescer.toJson());
+        }
         routingContext.response()
             .putHeader("content-type", "application/json; charset=utf-8")
             .end(Json.encodePrettily(metrics));